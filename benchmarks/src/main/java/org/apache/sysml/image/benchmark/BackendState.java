@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.benchmark;
+
+import org.apache.spark.sql.SparkSession;
+import org.apache.sysml.api.mlcontext.MLContext;
+import org.apache.sysml.image.ImgDml;
+import org.apache.sysml.image.backend.JmlcBackend;
+import org.apache.sysml.image.backend.MLContextBackend;
+
+/**
+ * Selects the ImgDml backend for a benchmark trial.
+ */
+public class BackendState {
+
+	public static final String JMLC = "jmlc";
+	public static final String MLCONTEXT = "mlcontext";
+
+	private static SparkSession ss = null;
+
+	public static void setUp(String backend) {
+		if (JMLC.equals(backend)) {
+			ImgDml.setBackend(new JmlcBackend());
+		} else if (MLCONTEXT.equals(backend)) {
+			if (ss == null) {
+				ss = SparkSession.builder().appName("SystemML").master("local[*]").getOrCreate();
+				new MLContext(ss);
+			}
+			ImgDml.setBackend(new MLContextBackend());
+		} else {
+			throw new RuntimeException("Unknown backend: " + backend);
+		}
+	}
+
+	public static void tearDown() {
+		if (ImgDml.getBackend() instanceof JmlcBackend) {
+			((JmlcBackend) ImgDml.getBackend()).close();
+		}
+		ImgDml.setBackend(new MLContextBackend());
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.apache.sysml.image.ImgIO;
+
+/**
+ * Generates reproducible test images for the benchmarks.
+ */
+public class BenchmarkImages {
+
+	public static final long SEED = 7;
+
+	public static final String INT_ARGB = "INT_ARGB";
+	public static final String INT_RGB = "INT_RGB";
+	public static final String BYTE_BGR = "3BYTE_BGR";
+	public static final String BYTE_ABGR = "4BYTE_ABGR";
+
+	/**
+	 * Returns a square ARGB image where a fraction alphaDensity of the pixels
+	 * have a non-zero alpha value. Half of the visible pixels are opaque and
+	 * the other half are blended.
+	 */
+	public static int[][] image(int size, double alphaDensity) {
+		Random random = new Random(SEED);
+		int[][] i = new int[size][size];
+		for (int y = 0; y < size; y++) {
+			for (int x = 0; x < size; x++) {
+				int rgb = random.nextInt() & 0x00FFFFFF;
+				int alpha = 0;
+				if (random.nextDouble() < alphaDensity) {
+					alpha = random.nextBoolean() ? 255 : 1 + random.nextInt(254);
+				}
+				i[y][x] = (alpha << 24) | rgb;
+			}
+		}
+		return i;
+	}
+
+	public static int[][] opaqueImage(int size) {
+		return image(size, 1.0);
+	}
+
+	/**
+	 * Returns the BufferedImage TYPE_* constant with the given name, without
+	 * the TYPE_ prefix.
+	 */
+	public static int imageType(String type) {
+		if (INT_ARGB.equals(type)) {
+			return BufferedImage.TYPE_INT_ARGB;
+		} else if (INT_RGB.equals(type)) {
+			return BufferedImage.TYPE_INT_RGB;
+		} else if (BYTE_BGR.equals(type)) {
+			return BufferedImage.TYPE_3BYTE_BGR;
+		} else if (BYTE_ABGR.equals(type)) {
+			return BufferedImage.TYPE_4BYTE_ABGR;
+		}
+		throw new RuntimeException("Unknown image type: " + type);
+	}
+
+	public static BufferedImage bufferedImage(int size, double alphaDensity, int type) {
+		BufferedImage argb = ImgIO.iToBuff(image(size, alphaDensity));
+		if (type == BufferedImage.TYPE_INT_ARGB) {
+			return argb;
+		}
+		BufferedImage bi = new BufferedImage(size, size, type);
+		bi.getGraphics().drawImage(argb, 0, 0, null);
+		return bi;
+	}
+}
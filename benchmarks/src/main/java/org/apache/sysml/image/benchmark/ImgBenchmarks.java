@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the standard JMH command line options. Unless
+ * another result format is given, results are written as JSON to
+ * jmh-result.json so runs can be compared over time.
+ */
+public class ImgBenchmarks {
+
+	public static final String DEFAULT_RESULT = "jmh-result.json";
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		ChainedOptionsBuilder ob = new OptionsBuilder().parent(cmd);
+		if (!cmd.getResultFormat().hasValue()) {
+			ob.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmd.getResult().hasValue()) {
+			ob.result(DEFAULT_RESULT);
+		}
+		new Runner(ob.build()).run();
+	}
+}
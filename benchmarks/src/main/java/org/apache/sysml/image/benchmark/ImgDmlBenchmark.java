@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysml.image.ImgDml;
+import org.apache.sysml.image.ImgDml.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImgDmlBenchmark {
+
+	public static final String GEOMETRY_DML = "dml";
+	public static final String GEOMETRY_NATIVE = "native";
+
+	@Param({ "256", "1024", "4096", "8192" })
+	public int size;
+
+	@Param({ "0.0", "0.1", "0.5", "1.0" })
+	public double alphaDensity;
+
+	@Param({ BackendState.JMLC, BackendState.MLCONTEXT })
+	public String backend;
+
+	/**
+	 * Whether the flips, rotations, transpose and splitVertical run as DML
+	 * through the backend or in the JVM (ImgDml.setNativeGeometry).
+	 */
+	@Param({ GEOMETRY_DML, GEOMETRY_NATIVE })
+	public String geometry;
+
+	private boolean nativeGeometry;
+	private int[][] i;
+	private int[][] background;
+	private Map<String, int[][]> channels;
+
+	@Setup
+	public void setUp() {
+		BackendState.setUp(backend);
+		nativeGeometry = ImgDml.isNativeGeometry();
+		ImgDml.setNativeGeometry(GEOMETRY_NATIVE.equals(geometry));
+		i = BenchmarkImages.image(size, alphaDensity);
+		background = BenchmarkImages.opaqueImage(size);
+		channels = ImgDml.splitChannels(i);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BackendState.tearDown();
+		ImgDml.setNativeGeometry(nativeGeometry);
+	}
+
+	@Benchmark
+	public int[][] splitVertical() {
+		return ImgDml.splitVertical(i);
+	}
+
+	@Benchmark
+	public int[][] flipHorizontal() {
+		return ImgDml.flipHorizontal(i);
+	}
+
+	@Benchmark
+	public int[][] flipVertical() {
+		return ImgDml.flipVertical(i);
+	}
+
+	@Benchmark
+	public int[][] transpose() {
+		return ImgDml.transpose(i);
+	}
+
+	@Benchmark
+	public int[][] rotate90() {
+		return ImgDml.rotate90(i);
+	}
+
+	@Benchmark
+	public int[][] rotate180() {
+		return ImgDml.rotate180(i);
+	}
+
+	@Benchmark
+	public int[][] rotate270() {
+		return ImgDml.rotate270(i);
+	}
+
+	@Benchmark
+	public Map<String, int[][]> splitChannels() {
+		return ImgDml.splitChannels(i);
+	}
+
+	@Benchmark
+	public int[][] combineChannels() {
+		return ImgDml.combineChannels(channels.get("a"), channels.get("r"), channels.get("g"), channels.get("b"));
+	}
+
+	@Benchmark
+	public int[][] shiftColorChannel() {
+		return ImgDml.shiftColorChannel(channels.get("r"), 64);
+	}
+
+	@Benchmark
+	public Map<String, int[][]> color() {
+		return ImgDml.color(Color.lime, size, size);
+	}
+
+	@Benchmark
+	public int[][] layer() {
+		return ImgDml.layer(background, i);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysml.image.ImgBlocks;
+import org.apache.sysml.image.ImgChannels;
+import org.apache.sysml.image.ImgIO;
+import org.apache.sysml.image.ImgPackedChannels;
+import org.apache.sysml.image.ImgPackedChannels.Layout;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImgIOBenchmark {
+
+	@Param({ "256", "1024", "4096", "8192" })
+	public int size;
+
+	@Param({ "0.1", "1.0" })
+	public double alphaDensity;
+
+	@Param({ BenchmarkImages.INT_ARGB, BenchmarkImages.INT_RGB, BenchmarkImages.BYTE_BGR, BenchmarkImages.BYTE_ABGR })
+	public String type;
+
+	private BufferedImage bi;
+	private int[][] i;
+
+	@Setup
+	public void setUp() {
+		bi = BenchmarkImages.bufferedImage(size, alphaDensity, BenchmarkImages.imageType(type));
+		i = ImgIO.buffToI(bi);
+	}
+
+	@Benchmark
+	public int[][] buffToI() {
+		return ImgIO.buffToI(bi);
+	}
+
+	@Benchmark
+	public BufferedImage iToBuff() {
+		return ImgIO.iToBuff(i);
+	}
+
+	@Benchmark
+	public ImgChannels buffToImgChannels() {
+		return ImgIO.buffToImgChannels(bi);
+	}
+
+	@Benchmark
+	public ImgPackedChannels buffToPackedChannelsPlanar() {
+		return ImgIO.buffToPackedChannels(bi, Layout.PLANAR);
+	}
+
+	@Benchmark
+	public ImgPackedChannels buffToPackedChannelsInterleaved() {
+		return ImgIO.buffToPackedChannels(bi, Layout.INTERLEAVED);
+	}
+
+	@Benchmark
+	public int[] buffToPixels() {
+		return ImgIO.buffToPixels(bi);
+	}
+
+	@Benchmark
+	public MatrixBlock buffToBlock() {
+		return ImgBlocks.buffToBlock(bi);
+	}
+}
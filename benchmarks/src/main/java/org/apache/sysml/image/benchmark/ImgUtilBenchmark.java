@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysml.image.ImageExample.Channel;
+import org.apache.sysml.image.ImgBlocks;
+import org.apache.sysml.image.ImgChannels;
+import org.apache.sysml.image.ImgIO;
+import org.apache.sysml.image.ImgPackedChannels;
+import org.apache.sysml.image.ImgPackedChannels.Layout;
+import org.apache.sysml.image.ImgUtil;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImgUtilBenchmark {
+
+	@Param({ "256", "1024", "4096", "8192" })
+	public int size;
+
+	@Param({ "0.1", "1.0" })
+	public double alphaDensity;
+
+	private int[][] i;
+	private double[][] d;
+	private MatrixBlock mb;
+	private ImgChannels ic;
+	private ImgPackedChannels pc;
+
+	@Setup
+	public void setUp() {
+		i = BenchmarkImages.image(size, alphaDensity);
+		d = ImgUtil.iToD(i);
+		mb = ImgBlocks.iToBlock(i);
+		ic = ImgIO.buffToImgChannels(ImgIO.iToBuff(i));
+		pc = ImgPackedChannels.fromImgChannels(ic, Layout.PLANAR);
+	}
+
+	@Benchmark
+	public double[][] iToD() {
+		return ImgUtil.iToD(i);
+	}
+
+	@Benchmark
+	public int[][] dToI() {
+		return ImgUtil.dToI(d);
+	}
+
+	@Benchmark
+	public MatrixBlock iToBlock() {
+		return ImgBlocks.iToBlock(i);
+	}
+
+	@Benchmark
+	public int[][] blockToI() {
+		return ImgBlocks.blockToI(mb);
+	}
+
+	@Benchmark
+	public int[][] combineChannels() {
+		return ImgUtil.combineChannels(ic.alpha, ic.red, ic.green, ic.blue);
+	}
+
+	@Benchmark
+	public int[][] combinePackedChannels() {
+		return ImgUtil.combineChannels(pc);
+	}
+
+	@Benchmark
+	public int[][] shiftChannel() {
+		// shifting by zero leaves the channel unchanged between invocations
+		ImgUtil.shiftChannel(ic.red, 0);
+		return ic.red;
+	}
+
+	@Benchmark
+	public ImgPackedChannels shiftPackedChannel() {
+		ImgUtil.shiftChannel(pc, Channel.RED, 0);
+		return pc;
+	}
+}
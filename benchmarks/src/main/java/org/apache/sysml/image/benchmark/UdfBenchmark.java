@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sysml.image.ImgDml;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the DML splitChannels and combineChannels functions with the
+ * SplitChannels and CombineChannels Java UDFs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UdfBenchmark {
+
+	@Param({ "256", "1024", "4096", "8192" })
+	public int size;
+
+	@Param({ "0.0", "0.1", "1.0" })
+	public double alphaDensity;
+
+	@Param({ BackendState.JMLC, BackendState.MLCONTEXT })
+	public String backend;
+
+	private int[][] i;
+	private Map<String, int[][]> channels;
+
+	@Setup
+	public void setUp() {
+		BackendState.setUp(backend);
+		i = BenchmarkImages.image(size, alphaDensity);
+		channels = ImgDml.splitChannels(i);
+	}
+
+	@TearDown
+	public void tearDown() {
+		BackendState.tearDown();
+	}
+
+	@Benchmark
+	public Map<String, int[][]> splitChannelsDml() {
+		return ImgDml.splitChannels(i);
+	}
+
+	@Benchmark
+	public Map<String, int[][]> splitChannelsUdf() {
+		return ImgDml.splitChannelsJava(i);
+	}
+
+	@Benchmark
+	public int[][] combineChannelsDml() {
+		return ImgDml.combineChannels(channels.get("a"), channels.get("r"), channels.get("g"), channels.get("b"));
+	}
+
+	@Benchmark
+	public int[][] combineChannelsUdf() {
+		return ImgDml.combineChannelsJava(channels.get("a"), channels.get("r"), channels.get("g"),
+				channels.get("b"));
+	}
+}
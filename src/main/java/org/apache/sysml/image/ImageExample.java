@@ -30,6 +30,7 @@ import javax.swing.JLabel;
 import org.apache.spark.sql.SparkSession;
 import org.apache.sysml.api.mlcontext.MLContext;
 import org.apache.sysml.image.ImgDml.Color;
+import org.apache.sysml.image.backend.JmlcBackend;
 
 public class ImageExample {
 
@@ -39,8 +40,12 @@ public class ImageExample {
 
 	public static void main(String[] args) throws Exception {
 
-		SparkSession ss = SparkSession.builder().appName("SystemML").master("local").getOrCreate();
-		new MLContext(ss);
+		if (args.length > 0 && "jmlc".equals(args[0])) {
+			ImgDml.setBackend(new JmlcBackend());
+		} else {
+			SparkSession ss = SparkSession.builder().appName("SystemML").master("local").getOrCreate();
+			new MLContext(ss);
+		}
 
 		File file = new File("src/main/resources/images/apache-systemml-logo.png");
 		BufferedImage bi = ImageIO.read(file);
@@ -48,24 +53,14 @@ public class ImageExample {
 		int height = bi.getHeight();
 		int[][] frontIm = ImgIO.buffToI(bi);
 
-		// change logo text color
-		ImgChannels frontCh = ImgDml.splitImgChannels(frontIm);
-		frontCh.green = ImgDml.shiftColorChannel(frontCh.green, -255);
-		frontCh.blue = ImgDml.shiftColorChannel(frontCh.blue, -255);
-		frontCh.red = ImgDml.shiftColorChannel(frontCh.red, 255);
-		frontIm = ImgDml.combineChannels(frontCh.alpha, frontCh.red, frontCh.green, frontCh.blue);
-
-		// create background image
-		ImgChannels backCh = ImgDml.colorImgChannels(Color.lime, width, height);
-		int[][] backIm = ImgDml.combineChannels(backCh.alpha, backCh.red, backCh.green, backCh.blue);
-
-		// layer images
-		int[][] comboIm = ImgDml.layer(backIm, frontIm);
+		// solid background color, which is never materialized
+		ImgSolid back = ImgDml.solid(Color.lime, width, height);
 
-		comboIm = ImgDml.splitVertical(comboIm);
-		comboIm = ImgDml.rotate90(comboIm);
-		comboIm = ImgDml.splitVertical(comboIm);
-		comboIm = ImgDml.rotate270(comboIm);
+		// change logo text color, layer images, and split and rotate in a
+		// single script execution
+		ImgPipeline pipeline = new ImgPipeline().shiftColorChannels(255, -255, -255).layerOnto(back)
+				.splitVertical().rotate90().splitVertical().rotate270();
+		int[][] comboIm = pipeline.execute(frontIm);
 
 		BufferedImage newBi = ImgIO.iToBuff(comboIm);
 		displayImage(newBi);
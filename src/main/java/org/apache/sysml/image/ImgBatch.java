@@ -0,0 +1,482 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageIO;
+
+import org.apache.sysml.image.ImgDml.Color;
+import org.apache.sysml.image.backend.Backend;
+import org.apache.sysml.image.backend.JmlcBackend;
+import org.apache.sysml.image.metrics.InMemoryMetrics;
+
+/**
+ * Headless batch runner that applies an ImgPipeline to every image in a
+ * directory and writes the results to another directory.
+ * 
+ * <pre>
+ * java org.apache.sysml.image.ImgBatch [options] inputDir outputDir
+ *   -ops op,op,...   rotate90, rotate180, rotate270, flipHorizontal,
+ *                    flipVertical, transpose, splitVertical,
+ *                    shift=red:green:blue, layerOnto=color
+ *   -decoders n      decode threads (default 2)
+ *   -workers n       compute threads, each with a JMLC backend (default cores)
+ *   -encoders n      encode threads (default 2)
+ *   -queue n         capacity of the queues between stages (default 2 * workers)
+ *   -subsample n     decode every n-th pixel in each direction (default 1)
+ *   -format name     output format (default png); alpha is dropped for
+ *                    formats without it, such as jpg
+ *   -metrics         print per-operation ImgDml metrics
+ * </pre>
+ * 
+ * Decode, compute and encode run on their own threads, joined by bounded
+ * queues, so reading and writing files overlap with DML execution and a fast
+ * stage blocks rather than buffering every image. Images that fail are
+ * reported and skipped. Outputs keep the base name of their input, or its
+ * whole name where base names collide. At the end the runner prints
+ * throughput and latency percentiles for each stage and end to end, which
+ * includes time spent waiting in queues.
+ */
+public class ImgBatch {
+
+	/**
+	 * An image on its way through the stages, with its timings.
+	 */
+	protected static class Item {
+		protected final File file;
+		protected final File output;
+		protected int[][] image;
+		protected long start;
+		protected long decodeNanos;
+		protected long computeNanos;
+		protected long encodeNanos;
+		protected long end;
+
+		protected Item(File file, File output) {
+			this.file = file;
+			this.output = output;
+		}
+	}
+
+	private static final Item END = new Item(null, null);
+
+	protected interface Stage {
+		void process(Item item) throws Exception;
+	}
+
+	private final List<String> ops;
+	private final int decoders;
+	private final int workers;
+	private final int encoders;
+	private final int queueSize;
+	private final int subsampling;
+	private final String format;
+	private final Supplier<Backend> backendFactory;
+
+	private final ConcurrentLinkedQueue<Item> completed = new ConcurrentLinkedQueue<Item>();
+	private final AtomicInteger failed = new AtomicInteger();
+
+	/**
+	 * @param ops
+	 *            Pipeline operations, as given to -ops
+	 * @param backendFactory
+	 *            Creates the backend of each compute thread
+	 */
+	public ImgBatch(List<String> ops, int decoders, int workers, int encoders, int queueSize, int subsampling,
+			String format, Supplier<Backend> backendFactory) {
+		if (decoders < 1 || workers < 1 || encoders < 1 || queueSize < 1 || subsampling < 1) {
+			throw new IllegalArgumentException("Thread counts, queue size and subsampling must be positive");
+		}
+		if (!ImgIO.hasWriter(format)) {
+			throw new IllegalArgumentException("No image writer for format " + format);
+		}
+		this.ops = new ArrayList<String>(ops);
+		this.decoders = decoders;
+		this.workers = workers;
+		this.encoders = encoders;
+		this.queueSize = queueSize;
+		this.subsampling = subsampling;
+		this.format = format;
+		this.backendFactory = backendFactory;
+		for (String op : ops) {
+			pipeline(op, new ImgPipeline(), 1, 1);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<String> ops = new ArrayList<String>();
+		int workers = Runtime.getRuntime().availableProcessors();
+		int decoders = 2;
+		int encoders = 2;
+		int queueSize = -1;
+		int subsampling = 1;
+		String format = "png";
+		boolean metrics = false;
+		List<String> dirs = new ArrayList<String>();
+		try {
+			for (int n = 0; n < args.length; n++) {
+				switch (args[n]) {
+				case "-ops":
+					ops.addAll(Arrays.asList(args[++n].split(",")));
+					break;
+				case "-decoders":
+					decoders = Integer.parseInt(args[++n]);
+					break;
+				case "-workers":
+					workers = Integer.parseInt(args[++n]);
+					break;
+				case "-encoders":
+					encoders = Integer.parseInt(args[++n]);
+					break;
+				case "-queue":
+					queueSize = Integer.parseInt(args[++n]);
+					break;
+				case "-subsample":
+					subsampling = Integer.parseInt(args[++n]);
+					break;
+				case "-format":
+					format = args[++n];
+					break;
+				case "-metrics":
+					metrics = true;
+					break;
+				default:
+					dirs.add(args[n]);
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+			usage("Invalid option: " + e.getMessage());
+		}
+		if (dirs.size() != 2) {
+			usage("Expected an input and an output directory");
+		}
+		if (queueSize < 0) {
+			queueSize = 2 * workers;
+		}
+		InMemoryMetrics m = null;
+		if (metrics) {
+			m = new InMemoryMetrics();
+			ImgDml.setMetrics(m);
+		}
+
+		ImgBatch batch;
+		try {
+			batch = new ImgBatch(ops, decoders, workers, encoders, queueSize, subsampling, format,
+					JmlcBackend::new);
+		} catch (IllegalArgumentException e) {
+			usage(e.getMessage());
+			return;
+		}
+		String report = batch.run(new File(dirs.get(0)), new File(dirs.get(1)));
+		System.out.print(report);
+		if (m != null) {
+			System.out.println();
+			System.out.print(m);
+		}
+		if (batch.getFailed() > 0) {
+			System.exit(1);
+		}
+	}
+
+	protected static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: ImgBatch [-ops op,...] [-decoders n] [-workers n] [-encoders n] [-queue n]"
+				+ " [-subsample n] [-format name] [-metrics] inputDir outputDir");
+		System.exit(2);
+	}
+
+	/**
+	 * Processes every image file in the input directory and returns the
+	 * report.
+	 */
+	public String run(File inputDir, File outputDir) throws IOException {
+		return run(listImages(inputDir), outputDir);
+	}
+
+	public String run(List<File> files, File outputDir) throws IOException {
+		if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+			throw new IOException("Couldn't create " + outputDir);
+		}
+		completed.clear();
+		failed.set(0);
+
+		List<String> names = new ArrayList<String>(files.size());
+		for (File file : files) {
+			names.add(file.getName());
+		}
+		List<String> outputs = ImgIO.outputNames(names, format);
+		BlockingQueue<Item> inputs = new LinkedBlockingQueue<Item>();
+		for (int n = 0; n < files.size(); n++) {
+			inputs.add(new Item(files.get(n), new File(outputDir, outputs.get(n))));
+		}
+		for (int n = 0; n < decoders; n++) {
+			inputs.add(END);
+		}
+		BlockingQueue<Item> decoded = new ArrayBlockingQueue<Item>(queueSize);
+		BlockingQueue<Item> computed = new ArrayBlockingQueue<Item>(queueSize);
+
+		long start = System.nanoTime();
+		try (ImgEngine engine = new ImgEngine(workers, 0, backendFactory)) {
+			List<Thread> threads = new ArrayList<Thread>();
+			threads.addAll(stage("decode", decoders, inputs, decoded, workers, item -> {
+				item.start = System.nanoTime();
+				item.image = ImgIO.readI(item.file, null, subsampling);
+				item.decodeNanos = System.nanoTime() - item.start;
+			}));
+			threads.addAll(stage("compute", workers, decoded, computed, encoders, item -> {
+				long t = System.nanoTime();
+				item.image = engine.run(() -> pipeline(item.image).execute(item.image));
+				item.computeNanos = System.nanoTime() - t;
+			}));
+			threads.addAll(stage("encode", encoders, computed, null, 0, item -> {
+				long t = System.nanoTime();
+				BufferedImage bi = ImgIO.forFormat(ImgIO.iToBuff(item.image), format);
+				item.image = null;
+				if (!ImageIO.write(bi, format, item.output)) {
+					throw new IOException("No writer for " + format);
+				}
+				item.end = System.nanoTime();
+				item.encodeNanos = item.end - t;
+				completed.add(item);
+			}));
+			for (Thread t : threads) {
+				t.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted running batch", e);
+		}
+		return report(System.nanoTime() - start);
+	}
+
+	/**
+	 * Starts the threads of a stage. Each takes items until it sees END, and
+	 * the last to finish passes END on to each thread of the next stage.
+	 */
+	protected List<Thread> stage(String name, int threads, BlockingQueue<Item> in, BlockingQueue<Item> out,
+			int nextThreads, Stage stage) {
+		AtomicInteger running = new AtomicInteger(threads);
+		List<Thread> list = new ArrayList<Thread>(threads);
+		for (int n = 0; n < threads; n++) {
+			Thread t = new Thread(() -> {
+				try {
+					for (Item item = in.take(); item != END; item = in.take()) {
+						try {
+							stage.process(item);
+						} catch (Throwable e) {
+							item.image = null;
+							failed.incrementAndGet();
+							System.err.println("Error in " + name + " of " + item.file + ": " + e);
+							continue;
+						}
+						if (out != null) {
+							out.put(item);
+						}
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					if (running.decrementAndGet() == 0 && out != null) {
+						end(out, nextThreads);
+					}
+				}
+			}, "img-batch-" + name + "-" + (n + 1));
+			t.setDaemon(true);
+			t.start();
+			list.add(t);
+		}
+		return list;
+	}
+
+	/**
+	 * Puts END markers even if interrupted, since the next stage only stops
+	 * when it gets them.
+	 */
+	protected static void end(BlockingQueue<Item> out, int count) {
+		boolean interrupted = false;
+		for (int k = 0; k < count; k++) {
+			while (true) {
+				try {
+					out.put(END);
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Builds the pipeline for an image. Solid backgrounds take the size of
+	 * the image, so the pipeline is built for each one.
+	 */
+	protected ImgPipeline pipeline(int[][] i) {
+		ImgPipeline p = new ImgPipeline();
+		int h = i.length;
+		int w = (h == 0) ? 0 : i[0].length;
+		for (String op : ops) {
+			pipeline(op, p, w, h);
+		}
+		return p;
+	}
+
+	protected static void pipeline(String op, ImgPipeline p, int w, int h) {
+		String[] parts = op.trim().split("=", 2);
+		switch (parts[0]) {
+		case "rotate90":
+			p.rotate90();
+			break;
+		case "rotate180":
+			p.rotate180();
+			break;
+		case "rotate270":
+			p.rotate270();
+			break;
+		case "flipHorizontal":
+			p.flipHorizontal();
+			break;
+		case "flipVertical":
+			p.flipVertical();
+			break;
+		case "transpose":
+			p.transpose();
+			break;
+		case "splitVertical":
+			p.splitVertical();
+			break;
+		case "shift":
+			String[] shifts = (parts.length > 1) ? parts[1].split(":") : new String[0];
+			if (shifts.length != 3) {
+				throw new IllegalArgumentException("Expected shift=red:green:blue, got " + op);
+			}
+			p.shiftColorChannels(Integer.parseInt(shifts[0]), Integer.parseInt(shifts[1]),
+					Integer.parseInt(shifts[2]));
+			break;
+		case "layerOnto":
+			if (parts.length < 2) {
+				throw new IllegalArgumentException("Expected layerOnto=color, got " + op);
+			}
+			p.layerOnto(ImgDml.solid(Color.valueOf(parts[1]), w, h));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown operation " + op);
+		}
+	}
+
+	protected static List<File> listImages(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			throw new IOException("Couldn't list " + dir);
+		}
+		Set<String> suffixes = new HashSet<String>();
+		for (String s : ImageIO.getReaderFileSuffixes()) {
+			suffixes.add(s.toLowerCase(Locale.ROOT));
+		}
+		List<File> images = new ArrayList<File>();
+		for (File f : files) {
+			String name = f.getName();
+			int dot = name.lastIndexOf('.');
+			if (f.isFile() && dot > 0 && suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+				images.add(f);
+			}
+		}
+		Collections.sort(images);
+		return images;
+	}
+
+	public int getCompleted() {
+		return completed.size();
+	}
+
+	public int getFailed() {
+		return failed.get();
+	}
+
+	protected String report(long elapsedNanos) {
+		List<Item> items = new ArrayList<Item>(completed);
+		int n = items.size();
+		long[] decode = new long[n];
+		long[] compute = new long[n];
+		long[] encode = new long[n];
+		long[] total = new long[n];
+		for (int k = 0; k < n; k++) {
+			Item item = items.get(k);
+			decode[k] = item.decodeNanos;
+			compute[k] = item.computeNanos;
+			encode[k] = item.encodeNanos;
+			total[k] = item.end - item.start;
+		}
+		double seconds = elapsedNanos / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("images: %d completed, %d failed in %.3f s (%.2f images/s)%n", n, failed.get(),
+				seconds, (seconds > 0) ? n / seconds : 0));
+		sb.append(String.format("threads: %d decode, %d compute, %d encode; queue size %d%n", decoders, workers,
+				encoders, queueSize));
+		sb.append(String.format("%-10s %12s %12s %12s %12s %12s%n", "stage", "mean ms", "p50 ms", "p90 ms",
+				"p99 ms", "max ms"));
+		sb.append(row("decode", decode));
+		sb.append(row("compute", compute));
+		sb.append(row("encode", encode));
+		sb.append(row("total", total));
+		return sb.toString();
+	}
+
+	protected static String row(String stage, long[] nanos) {
+		Arrays.sort(nanos);
+		long sum = 0;
+		for (long t : nanos) {
+			sum += t;
+		}
+		double mean = (nanos.length == 0) ? 0 : (double) sum / nanos.length;
+		return String.format("%-10s %12.3f %12.3f %12.3f %12.3f %12.3f%n", stage, mean / 1e6,
+				percentile(nanos, 0.5) / 1e6, percentile(nanos, 0.9) / 1e6, percentile(nanos, 0.99) / 1e6,
+				percentile(nanos, 1) / 1e6);
+	}
+
+	/**
+	 * Nearest-rank percentile of sorted values.
+	 */
+	protected static long percentile(long[] sorted, double quantile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(quantile * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+}
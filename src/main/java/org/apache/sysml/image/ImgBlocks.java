@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.apache.sysml.image.ImageExample.Channel;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * Conversions between images and dense MatrixBlocks. Values are copied
+ * straight between the image representation and the contiguous double array
+ * of the block, and large images are split across rows onto multiple cores.
+ */
+public class ImgBlocks {
+
+	/**
+	 * Minimum number of cells before a conversion is split across threads.
+	 */
+	public static final int PAR_THRESHOLD = 64 * 1024;
+
+	/**
+	 * Maximum fraction of visible (non-zero alpha) pixels for an overlay to be
+	 * converted to a sparse block and composited with img_util::layerSparse.
+	 */
+	public static final double SPARSE_OVERLAY_FRACTION = 0.25;
+
+	public interface RowRange {
+		public void apply(int rl, int ru);
+	}
+
+	public static void parallelRows(int rows, int cols, RowRange task) {
+		int k = Math.min(rows, Runtime.getRuntime().availableProcessors());
+		if ((long) rows * cols < PAR_THRESHOLD || k < 2) {
+			task.apply(0, rows);
+			return;
+		}
+		int chunk = (rows + k - 1) / k;
+		IntStream.range(0, k).parallel().forEach(t -> task.apply(t * chunk, Math.min(rows, (t + 1) * chunk)));
+	}
+
+	public static MatrixBlock allocate(int rows, int cols) {
+		MatrixBlock mb = new MatrixBlock(rows, cols, false);
+		mb.allocateDenseBlock();
+		return mb;
+	}
+
+	/**
+	 * Returns the dense values of a block, converting a sparse block to dense.
+	 * An empty block returns an array of zeros.
+	 */
+	public static double[] denseArray(MatrixBlock mb) {
+		if (mb.isInSparseFormat()) {
+			mb.sparseToDense();
+		}
+		double[] d = mb.getDenseBlock();
+		return (d != null) ? d : new double[mb.getNumRows() * mb.getNumColumns()];
+	}
+
+	/**
+	 * Returns the dense values of a block without modifying the block, or null
+	 * if the block is empty. The values of a sparse block are copied.
+	 */
+	public static double[] values(MatrixBlock mb) {
+		if (mb.isEmptyBlock(false)) {
+			return null;
+		}
+		if (!mb.isInSparseFormat()) {
+			return mb.getDenseBlock();
+		}
+		int rows = mb.getNumRows();
+		int cols = mb.getNumColumns();
+		double[] d = new double[rows * cols];
+		for (int r = 0, p = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++, p++) {
+				d[p] = mb.quickGetValue(r, c);
+			}
+		}
+		return d;
+	}
+
+	public static MatrixBlock iToBlock(int[][] i) {
+		int height = i.length;
+		int width = i[0].length;
+		MatrixBlock mb = allocate(height, width);
+		double[] d = mb.getDenseBlock();
+		AtomicLong nnz = new AtomicLong();
+		parallelRows(height, width, (rl, ru) -> {
+			long n = 0;
+			for (int y = rl; y < ru; y++) {
+				int[] row = i[y];
+				for (int x = 0, p = y * width; x < width; x++, p++) {
+					d[p] = row[x];
+					n += (row[x] != 0) ? 1 : 0;
+				}
+			}
+			nnz.addAndGet(n);
+		});
+		mb.setNonZeros(nnz.get());
+		return mb;
+	}
+
+	/**
+	 * Converts an overlay image to a block. If at most
+	 * SPARSE_OVERLAY_FRACTION of its pixels are visible, the block is sparse
+	 * and holds only the visible pixels (fully transparent pixels become 0,
+	 * which layers identically). Otherwise the block is dense.
+	 */
+	public static MatrixBlock overlayToBlock(int[][] i) {
+		int height = i.length;
+		int width = i[0].length;
+		long visible = 0;
+		for (int[] row : i) {
+			for (int argb : row) {
+				visible += ((argb >>> 24) != 0) ? 1 : 0;
+			}
+		}
+		if (visible > SPARSE_OVERLAY_FRACTION * height * width) {
+			return iToBlock(i);
+		}
+		MatrixBlock mb = new MatrixBlock(height, width, true, visible);
+		for (int y = 0; y < height; y++) {
+			int[] row = i[y];
+			for (int x = 0; x < width; x++) {
+				if ((row[x] >>> 24) != 0) {
+					mb.appendValue(y, x, row[x]);
+				}
+			}
+		}
+		return mb;
+	}
+
+	public static int[][] blockToI(MatrixBlock mb) {
+		int height = mb.getNumRows();
+		int width = mb.getNumColumns();
+		double[] d = denseArray(mb);
+		int[][] i = new int[height][width];
+		parallelRows(height, width, (rl, ru) -> {
+			for (int y = rl; y < ru; y++) {
+				int[] row = i[y];
+				for (int x = 0, p = y * width; x < width; x++, p++) {
+					row[x] = (int) d[p];
+				}
+			}
+		});
+		return i;
+	}
+
+	public static MatrixBlock pixelsToBlock(int[] pixels, int width, int height) {
+		MatrixBlock mb = allocate(height, width);
+		double[] d = mb.getDenseBlock();
+		AtomicLong nnz = new AtomicLong();
+		parallelRows(height, width, (rl, ru) -> {
+			long n = 0;
+			for (int p = rl * width; p < ru * width; p++) {
+				d[p] = pixels[p];
+				n += (pixels[p] != 0) ? 1 : 0;
+			}
+			nnz.addAndGet(n);
+		});
+		mb.setNonZeros(nnz.get());
+		return mb;
+	}
+
+	public static int[] blockToPixels(MatrixBlock mb) {
+		int height = mb.getNumRows();
+		int width = mb.getNumColumns();
+		double[] d = denseArray(mb);
+		int[] pixels = new int[height * width];
+		parallelRows(height, width, (rl, ru) -> {
+			for (int p = rl * width; p < ru * width; p++) {
+				pixels[p] = (int) d[p];
+			}
+		});
+		return pixels;
+	}
+
+	public static MatrixBlock buffToBlock(BufferedImage bi) {
+		int width = bi.getWidth();
+		int height = bi.getHeight();
+		MatrixBlock mb = allocate(height, width);
+		double[] d = mb.getDenseBlock();
+		AtomicLong nnz = new AtomicLong();
+		parallelRows(height, width, (rl, ru) -> {
+			long n = 0;
+			int[] row = new int[width];
+			for (int y = rl; y < ru; y++) {
+				ImgIO.getRow(bi, y, row);
+				for (int x = 0, p = y * width; x < width; x++, p++) {
+					d[p] = row[x];
+					n += (row[x] != 0) ? 1 : 0;
+				}
+			}
+			nnz.addAndGet(n);
+		});
+		mb.setNonZeros(nnz.get());
+		return mb;
+	}
+
+	public static BufferedImage blockToBuff(MatrixBlock mb) {
+		int height = mb.getNumRows();
+		int width = mb.getNumColumns();
+		double[] d = denseArray(mb);
+		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		parallelRows(height, width, (rl, ru) -> {
+			int[] row = new int[width];
+			for (int y = rl; y < ru; y++) {
+				for (int x = 0, p = y * width; x < width; x++, p++) {
+					row[x] = (int) d[p];
+				}
+				ImgIO.setRow(bi, y, row);
+			}
+		});
+		return bi;
+	}
+
+	public static MatrixBlock channelToBlock(ImgPackedChannels pc, Channel channel) {
+		int width = pc.width;
+		int height = pc.height;
+		byte[] data = pc.data;
+		int offset = pc.channelOffset(channel);
+		int stride = pc.pixelStride();
+		boolean signed = (channel == Channel.ALPHA);
+		MatrixBlock mb = allocate(height, width);
+		double[] d = mb.getDenseBlock();
+		AtomicLong nnz = new AtomicLong();
+		parallelRows(height, width, (rl, ru) -> {
+			long n = 0;
+			for (int p = rl * width, q = offset + p * stride; p < ru * width; p++, q += stride) {
+				int v = signed ? data[q] : data[q] & 0xFF;
+				d[p] = v;
+				n += (v != 0) ? 1 : 0;
+			}
+			nnz.addAndGet(n);
+		});
+		mb.setNonZeros(nnz.get());
+		return mb;
+	}
+
+	public static void blockToChannel(MatrixBlock mb, ImgPackedChannels pc, Channel channel) {
+		int width = pc.width;
+		int height = pc.height;
+		if (mb.getNumRows() != height || mb.getNumColumns() != width) {
+			throw new RuntimeException("Block of size " + mb.getNumRows() + "x" + mb.getNumColumns()
+					+ " doesn't match channels of size " + height + "x" + width);
+		}
+		double[] d = denseArray(mb);
+		byte[] data = pc.data;
+		int offset = pc.channelOffset(channel);
+		int stride = pc.pixelStride();
+		parallelRows(height, width, (rl, ru) -> {
+			for (int p = rl * width, q = offset + p * stride; p < ru * width; p++, q += stride) {
+				data[q] = (byte) (int) d[p];
+			}
+		});
+	}
+
+	/**
+	 * Stacks same-sized images into one block with one image per row, each
+	 * image flattened in row-major order.
+	 */
+	public static MatrixBlock stack(List<int[][]> images) {
+		int n = images.size();
+		int height = images.get(0).length;
+		int width = images.get(0)[0].length;
+		int cells = height * width;
+		for (int[][] i : images) {
+			if (i.length != height || i[0].length != width) {
+				throw new RuntimeException("Image of size " + i.length + "x" + i[0].length
+						+ " doesn't match batch image size " + height + "x" + width);
+			}
+		}
+		MatrixBlock mb = allocate(n, cells);
+		double[] d = mb.getDenseBlock();
+		AtomicLong nnz = new AtomicLong();
+		parallelRows(n, cells, (rl, ru) -> {
+			long c = 0;
+			for (int k = rl; k < ru; k++) {
+				int[][] i = images.get(k);
+				int p = k * cells;
+				for (int y = 0; y < height; y++) {
+					int[] row = i[y];
+					for (int x = 0; x < width; x++, p++) {
+						d[p] = row[x];
+						c += (row[x] != 0) ? 1 : 0;
+					}
+				}
+			}
+			nnz.addAndGet(c);
+		});
+		mb.setNonZeros(nnz.get());
+		return mb;
+	}
+
+	/**
+	 * Splits a block with one flattened image per row into images of the given
+	 * size.
+	 */
+	public static List<int[][]> unstack(MatrixBlock mb, int height, int width) {
+		int n = mb.getNumRows();
+		int cells = height * width;
+		if (mb.getNumColumns() != cells) {
+			throw new RuntimeException("Block with " + mb.getNumColumns() + " columns doesn't hold images of size "
+					+ height + "x" + width);
+		}
+		double[] d = denseArray(mb);
+		int[][][] images = new int[n][height][width];
+		parallelRows(n, cells, (rl, ru) -> {
+			for (int k = rl; k < ru; k++) {
+				int p = k * cells;
+				for (int y = 0; y < height; y++) {
+					int[] row = images[k][y];
+					for (int x = 0; x < width; x++, p++) {
+						row[x] = (int) d[p];
+					}
+				}
+			}
+		});
+		List<int[][]> l = new ArrayList<int[][]>(n);
+		for (int[][] i : images) {
+			l.add(i);
+		}
+		return l;
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.sysml.image.ImgDml.Results;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * Cache of ImgDml script results, keyed by a 128-bit hash of the script, its
+ * outputs and the content of its inputs. On a hit the script is neither
+ * executed nor are its inputs converted. The cache is bounded by the
+ * estimated size of the results in bytes and evicts the least recently used
+ * results first. Enable it with ImgDml.setCache. Thread-safe.
+ * 
+ * Inputs are hashed rather than stored, so two different inputs with the same
+ * 128-bit hash would share a result. Inputs of types other than int[][],
+ * List of int[][], MatrixBlock, Integer, Double and String are not cached.
+ */
+public class ImgCache {
+
+	/**
+	 * 128-bit content hash identifying a script execution.
+	 */
+	public static final class Key {
+		private final long h1;
+		private final long h2;
+
+		public Key(long h1, long h2) {
+			this.h1 = h1;
+			this.h2 = h2;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return h1 == k.h1 && h2 == k.h2;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (h1 ^ (h1 >>> 32));
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%016x%016x", h1, h2);
+		}
+	}
+
+	/**
+	 * Two-lane 64-bit hash (the MurmurHash3 x64 128 mixing steps) over a stream
+	 * of longs.
+	 */
+	protected static final class Hasher {
+		private static final long C1 = 0x87c37b91114253d5L;
+		private static final long C2 = 0x4cf5ad432745937fL;
+
+		private long h1 = 0x9368e53c2f6af274L;
+		private long h2 = 0x586dcd208f7cd3fdL;
+		private long n = 0;
+
+		public void add(long v) {
+			long k1 = Long.rotateLeft(v * C1, 31) * C2;
+			h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27) + h2;
+			h1 = h1 * 5 + 0x52dce729;
+			long k2 = Long.rotateLeft(v * C2, 33) * C1;
+			h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31) + h1;
+			h2 = h2 * 5 + 0x38495ab5;
+			n++;
+		}
+
+		public void add(int[] row) {
+			int x = 0;
+			for (; x + 1 < row.length; x += 2) {
+				add(((long) row[x] << 32) | (row[x + 1] & 0xFFFFFFFFL));
+			}
+			if (x < row.length) {
+				add(row[x]);
+			}
+		}
+
+		public void add(String s) {
+			byte[] b = s.getBytes(StandardCharsets.UTF_8);
+			add(b.length);
+			for (byte v : b) {
+				add(v);
+			}
+		}
+
+		public Key key() {
+			long a = h1 ^ n;
+			long b = h2 ^ n;
+			a += b;
+			b += a;
+			a = fmix(a);
+			b = fmix(b);
+			a += b;
+			b += a;
+			return new Key(a, b);
+		}
+
+		private static long fmix(long k) {
+			k ^= k >>> 33;
+			k *= 0xff51afd7ed558ccdL;
+			k ^= k >>> 33;
+			k *= 0xc4ceb9fe1a85ec53L;
+			k ^= k >>> 33;
+			return k;
+		}
+	}
+
+	private final long maxBytes;
+	private long bytes = 0;
+	private final LinkedHashMap<Key, Results> entries = new LinkedHashMap<Key, Results>(16, 0.75f, true);
+	private final Map<Key, Long> sizes = new LinkedHashMap<Key, Long>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxBytes
+	 *            Maximum estimated size of the cached results
+	 */
+	public ImgCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the key of a script execution, or null if an input can't be
+	 * hashed.
+	 */
+	@SuppressWarnings("unchecked")
+	public static Key key(String script, Map<String, Object> inputs, String... outputs) {
+		Hasher h = new Hasher();
+		h.add(script);
+		for (String output : outputs) {
+			h.add(output);
+		}
+		for (Map.Entry<String, Object> input : inputs.entrySet()) {
+			h.add(input.getKey());
+			Object value = input.getValue();
+			if (value instanceof int[][]) {
+				add(h, (int[][]) value);
+			} else if (value instanceof List) {
+				List<int[][]> images = (List<int[][]>) value;
+				h.add(images.size());
+				for (int[][] i : images) {
+					add(h, i);
+				}
+			} else if (value instanceof MatrixBlock) {
+				MatrixBlock mb = (MatrixBlock) value;
+				h.add(((long) mb.getNumRows() << 32) | mb.getNumColumns());
+				double[] d = ImgBlocks.values(mb);
+				if (d != null) {
+					for (double v : d) {
+						h.add(Double.doubleToLongBits(v));
+					}
+				}
+			} else if (value instanceof Integer) {
+				h.add(1);
+				h.add(((Integer) value).intValue());
+			} else if (value instanceof Double) {
+				h.add(2);
+				h.add(Double.doubleToLongBits((Double) value));
+			} else if (value instanceof String) {
+				h.add(3);
+				h.add((String) value);
+			} else {
+				return null;
+			}
+		}
+		return h.key();
+	}
+
+	private static void add(Hasher h, int[][] i) {
+		h.add(((long) i.length << 32) | i[0].length);
+		for (int[] row : i) {
+			h.add(row);
+		}
+	}
+
+	public synchronized Results get(Key key) {
+		Results res = entries.get(key);
+		if (res != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return res;
+	}
+
+	/**
+	 * Caches results, evicting the least recently used results until the
+	 * cache fits in maxBytes. Results larger than maxBytes aren't cached.
+	 * Sparse blocks are converted to dense first, so that cached results are
+	 * only read afterwards.
+	 */
+	public void put(Key key, Results res) {
+		long size = 0;
+		for (MatrixBlock mb : res.values()) {
+			if (mb.isInSparseFormat()) {
+				mb.sparseToDense();
+			}
+			size += size(mb);
+		}
+		if (size > maxBytes) {
+			return;
+		}
+		synchronized (this) {
+			Long old = sizes.put(key, size);
+			entries.put(key, res);
+			bytes += size - ((old != null) ? old : 0);
+			Iterator<Map.Entry<Key, Results>> it = entries.entrySet().iterator();
+			while (bytes > maxBytes && it.hasNext()) {
+				Map.Entry<Key, Results> eldest = it.next();
+				it.remove();
+				bytes -= sizes.remove(eldest.getKey());
+				evictions.increment();
+			}
+		}
+	}
+
+	/**
+	 * Estimated size of a cached block: the block plus the int[][] that
+	 * Results.toI keeps for it.
+	 */
+	protected static long size(MatrixBlock mb) {
+		long rows = mb.getNumRows();
+		long cols = mb.getNumColumns();
+		return rows * cols * 8 + rows * cols * 4 + rows * 16;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		sizes.clear();
+		bytes = 0;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public double getHitRate() {
+		long h = getHits();
+		long total = h + getMisses();
+		return (total == 0) ? 0 : (double) h / total;
+	}
+
+	@Override
+	public String toString() {
+		return "ImgCache[entries=" + getSize() + ", bytes=" + getBytes() + "/" + maxBytes + ", hits=" + getHits()
+				+ ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+}
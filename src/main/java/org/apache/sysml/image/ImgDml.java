@@ -19,99 +19,336 @@
 
 package org.apache.sysml.image;
 
-import static org.apache.sysml.api.mlcontext.ScriptFactory.dml;
-
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import org.apache.sysml.api.mlcontext.MLResults;
-import org.apache.sysml.api.mlcontext.Matrix;
-import org.apache.sysml.api.mlcontext.Script;
+import org.apache.sysml.image.ImageExample.Channel;
+import org.apache.sysml.image.ImgPackedChannels.Layout;
+import org.apache.sysml.image.backend.Backend;
+import org.apache.sysml.image.backend.MLContextBackend;
+import org.apache.sysml.image.metrics.Meter;
+import org.apache.sysml.image.metrics.Metrics;
+import org.apache.sysml.image.metrics.Metrics.Phase;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 
 public class ImgDml {
 
 	public static final String SRC_UTIL = "source('img/img_util.dml') as img_util;";
 
+	/**
+	 * Named colors, with the values of img_util::color. ImgDml passes the
+	 * values to img_util::colorRGB as scalars.
+	 */
 	public enum Color {
-		white, silver, gray, black, red, maroon, yellow, olive, lime, green, aqua, teal, blue, navy, fuchsia, purple
+		white(255, 255, 255), silver(192, 192, 192), gray(128, 128, 128), black(0, 0, 0), red(255, 0, 0),
+		maroon(128, 0, 0), yellow(255, 255, 0), olive(128, 128, 0), lime(0, 255, 0), green(0, 128, 0),
+		aqua(0, 255, 255), teal(0, 128, 128), blue(0, 0, 255), navy(0, 0, 128), fuchsia(255, 0, 255),
+		purple(128, 0, 128);
+
+		private final int r;
+		private final int g;
+		private final int b;
+
+		Color(int r, int g, int b) {
+			this.r = r;
+			this.g = g;
+			this.b = b;
+		}
+
+		public int getRed() {
+			return r;
+		}
+
+		public int getGreen() {
+			return g;
+		}
+
+		public int getBlue() {
+			return b;
+		}
+
+		/**
+		 * Opaque ARGB value of the color.
+		 */
+		public int argb() {
+			return ImgUtil.combineChannels(-1, r, g, b);
+		}
+	}
+
+	private static Backend backend = new MLContextBackend();
+	private static volatile boolean nativeGeometry = true;
+	private static volatile ImgCache cache = null;
+	private static final ThreadLocal<Backend> threadBackend = new ThreadLocal<Backend>();
+
+	/**
+	 * Returns the backend of the current thread if one is set, and otherwise
+	 * the shared backend.
+	 */
+	public static Backend getBackend() {
+		Backend b = threadBackend.get();
+		return (b != null) ? b : backend;
+	}
+
+	public static void setBackend(Backend backend) {
+		ImgDml.backend = backend;
+	}
+
+	/**
+	 * Returns the backend set for the current thread, or null if it uses the
+	 * shared backend.
+	 */
+	public static Backend getThreadBackend() {
+		return threadBackend.get();
+	}
+
+	/**
+	 * Sets a backend that is only used by the current thread, which allows
+	 * threads to run operations concurrently with their own backends. A null
+	 * backend reverts the thread to the shared backend.
+	 */
+	public static void setThreadBackend(Backend backend) {
+		if (backend == null) {
+			threadBackend.remove();
+		} else {
+			threadBackend.set(backend);
+		}
+	}
+
+	public static boolean isNativeGeometry() {
+		return nativeGeometry;
+	}
+
+	/**
+	 * Selects whether the single-image flips, rotations, transpose and
+	 * splitVertical run in the JVM (ImgGeometry, the default) or as DML
+	 * through the backend.
+	 */
+	public static void setNativeGeometry(boolean nativeGeometry) {
+		ImgDml.nativeGeometry = nativeGeometry;
+	}
+
+	public static ImgCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Sets a cache of script results, so that repeated operations on the same
+	 * inputs skip conversion and execution. A null cache (the default)
+	 * disables caching.
+	 */
+	public static void setCache(ImgCache cache) {
+		ImgDml.cache = cache;
+	}
+
+	public static Metrics getMetrics() {
+		return Meter.getMetrics();
+	}
+
+	/**
+	 * Sets the metrics that operations report compile, execute and conversion
+	 * times to. A null metrics (the default) disables measurement.
+	 */
+	public static void setMetrics(Metrics metrics) {
+		Meter.setMetrics(metrics);
+	}
+
+	/**
+	 * Outputs of a script execution. Converting an output is measured as the
+	 * CONVERT_OUT phase of the script's operation.
+	 */
+	protected static class Results extends HashMap<String, MatrixBlock> {
+		private static final long serialVersionUID = 4021779468734462381L;
+
+		protected final String op;
+		private boolean shared = false;
+		private Map<String, int[][]> converted = null;
+
+		protected Results(String op, Map<String, MatrixBlock> outputs) {
+			super(outputs);
+			this.op = op;
+		}
+
+		/**
+		 * Marks results that are cached and shared between callers. get then
+		 * returns copies of the blocks, and toI keeps each output it converts
+		 * and returns copies of it, so no caller can change the cached
+		 * outputs.
+		 */
+		protected void share() {
+			shared = true;
+			converted = new ConcurrentHashMap<String, int[][]>();
+		}
+
+		@Override
+		public MatrixBlock get(Object name) {
+			MatrixBlock mb = super.get(name);
+			return (shared && mb != null) ? new MatrixBlock(mb) : mb;
+		}
+
+		protected MatrixBlock block(String name) {
+			return super.get(name);
+		}
+
+		public int[][] toI(String name) {
+			try (Meter meter = Meter.start(op, Phase.CONVERT_OUT)) {
+				if (converted == null) {
+					return ImgBlocks.blockToI(block(name));
+				}
+				int[][] i = converted.computeIfAbsent(name, n -> ImgBlocks.blockToI(block(n)));
+				int[][] copy = new int[i.length][];
+				for (int y = 0; y < i.length; y++) {
+					copy[y] = i[y].clone();
+				}
+				return copy;
+			}
+		}
+
+		public List<int[][]> toList(String name, int height, int width) {
+			try (Meter meter = Meter.start(op, Phase.CONVERT_OUT)) {
+				return ImgBlocks.unstack(block(name), height, width);
+			}
+		}
+
+		public void toChannel(String name, ImgPackedChannels pc, Channel channel) {
+			try (Meter meter = Meter.start(op, Phase.CONVERT_OUT)) {
+				ImgBlocks.blockToChannel(block(name), pc, channel);
+			}
+		}
+	}
+
+	/**
+	 * Executes a script with the img_util functions sourced. Image inputs can
+	 * be given as int[][] or as a List of int[][] (stacked one image per row),
+	 * and are converted as the CONVERT_IN phase of the script's operation.
+	 */
+	protected static Results execute(String script, Map<String, Object> inputs, String... outputs) {
+		ImgCache c = cache;
+		ImgCache.Key key = (c != null) ? ImgCache.key(script, inputs, outputs) : null;
+		if (key != null) {
+			Results res = c.get(key);
+			if (res != null) {
+				return res;
+			}
+		}
+		String op = Meter.isEnabled() ? Meter.opName(script) : null;
+		Map<String, Object> in = new LinkedHashMap<String, Object>();
+		try (Meter meter = Meter.start(op, Phase.CONVERT_IN)) {
+			for (Map.Entry<String, Object> input : inputs.entrySet()) {
+				in.put(input.getKey(), toInput(input.getValue()));
+			}
+		}
+		Results res = new Results(op, getBackend().execute(SRC_UTIL + script, in, outputs));
+		if (key != null) {
+			res.share();
+			c.put(key, res);
+		}
+		return res;
+	}
+
+	@SuppressWarnings("unchecked")
+	protected static Object toInput(Object value) {
+		if (value instanceof int[][]) {
+			return ImgBlocks.iToBlock((int[][]) value);
+		} else if (value instanceof List) {
+			return ImgBlocks.stack((List<int[][]>) value);
+		}
+		return value;
+	}
+
+	protected static Map<String, Object> inputs(Object... namesAndValues) {
+		Map<String, Object> m = new LinkedHashMap<String, Object>();
+		for (int n = 0; n < namesAndValues.length; n += 2) {
+			m.put((String) namesAndValues[n], namesAndValues[n + 1]);
+		}
+		return m;
+	}
+
+	protected static Map<String, int[][]> channels(Results res) {
+		Map<String, int[][]> m = new HashMap<String, int[][]>();
+		m.put("a", res.toI("a"));
+		m.put("r", res.toI("r"));
+		m.put("g", res.toI("g"));
+		m.put("b", res.toI("b"));
+		return m;
 	}
 
 	protected static int[][] imgUtilDml(String function, int[][] i) {
-		Matrix o = dml(SRC_UTIL + "o=img_util::" + function + "(i)").in("i", ImgUtil.iToD(i)).out("o").execute()
-				.getMatrix("o");
-		return ImgUtil.mToI(o);
+		Results res = execute("o=img_util::" + function + "(i)", inputs("i", i), "o");
+		return res.toI("o");
 	}
 
 	protected static int[][] imgUtilDml(String function, int[][] i, int x) {
-		Matrix o = dml(SRC_UTIL + "o=img_util::" + function + "(i,x)").in("i", ImgUtil.iToD(i)).in("x", x).out("o")
-				.execute().getMatrix("o");
-		return ImgUtil.mToI(o);
+		Results res = execute("o=img_util::" + function + "(i,x)", inputs("i", i, "x", x), "o");
+		return res.toI("o");
+	}
+
+	protected static int[][] imgUtilDml(String function, int[][] i, double x) {
+		Results res = execute("o=img_util::" + function + "(i,x)", inputs("i", i, "x", x), "o");
+		return res.toI("o");
 	}
 
 	public static int[][] splitVertical(int[][] i) {
-		return imgUtilDml("splitVertical", i);
+		return nativeGeometry ? ImgGeometry.splitVertical(i) : imgUtilDml("splitVertical", i);
 	}
 
 	public static int[][] flipHorizontal(int[][] i) {
-		return imgUtilDml("flipHorizontal", i);
+		return nativeGeometry ? ImgGeometry.flipHorizontal(i) : imgUtilDml("flipHorizontal", i);
 	}
 
 	public static int[][] flipVertical(int[][] i) {
-		return imgUtilDml("flipVertical", i);
+		return nativeGeometry ? ImgGeometry.flipVertical(i) : imgUtilDml("flipVertical", i);
 	}
 
 	public static int[][] transpose(int[][] i) {
-		return imgUtilDml("transpose", i);
+		return nativeGeometry ? ImgGeometry.transpose(i) : imgUtilDml("transpose", i);
 	}
 
 	public static int[][] rotate90(int[][] i) {
-		return imgUtilDml("rotate90", i);
+		return nativeGeometry ? ImgGeometry.rotate90(i) : imgUtilDml("rotate90", i);
 	}
 
 	public static int[][] rotate180(int[][] i) {
-		return imgUtilDml("rotate180", i);
+		return nativeGeometry ? ImgGeometry.rotate180(i) : imgUtilDml("rotate180", i);
 	}
 
 	public static int[][] rotate270(int[][] i) {
-		return imgUtilDml("rotate270", i);
+		return nativeGeometry ? ImgGeometry.rotate270(i) : imgUtilDml("rotate270", i);
 	}
 
-	public static Map<String, int[][]> splitChannelsJava(int[][] i) {
-		Script s = dml(SRC_UTIL + "[a,r,g,b]=img_util::splitChannelsJava(i);").in("i", ImgUtil.iToD(i)).out("a", "r",
-				"g", "b");
-		MLResults res = s.execute();
-
-		// try {
-		// System.out.print("A:" +
-		// DataConverter.toString(DataConverter.convertToMatrixBlock(res.getMatrixAs2DDoubleArray("a"))));
-		// System.out.print("R:" +
-		// DataConverter.toString(DataConverter.convertToMatrixBlock(res.getMatrixAs2DDoubleArray("r"))));
-		// System.out.print("G:" +
-		// DataConverter.toString(DataConverter.convertToMatrixBlock(res.getMatrixAs2DDoubleArray("g"))));
-		// System.out.print("B:" +
-		// DataConverter.toString(DataConverter.convertToMatrixBlock(res.getMatrixAs2DDoubleArray("b"))));
-		// } catch (DMLRuntimeException e) {
-		// e.printStackTrace();
-		// }
+	public static int[][] transverse(int[][] i) {
+		return nativeGeometry ? ImgGeometry.transverse(i) : imgUtilDml("transverse", i);
+	}
 
-		Map<String, int[][]> m = new HashMap<String, int[][]>();
-		m.put("a", ImgUtil.mToI(res, "a"));
-		m.put("r", ImgUtil.mToI(res, "r"));
-		m.put("g", ImgUtil.mToI(res, "g"));
-		m.put("b", ImgUtil.mToI(res, "b"));
-		return m;
+	/**
+	 * Applies a transform in one pass. IDENTITY returns a copy.
+	 */
+	public static int[][] transform(int[][] i, ImgTransform t) {
+		if (nativeGeometry || t == ImgTransform.IDENTITY) {
+			return t.apply(i);
+		}
+		return imgUtilDml(t.getDmlFunction(), i);
+	}
+
+	/**
+	 * Returns a view of an image that defers and folds flips, rotations and
+	 * transposes until its pixels are needed.
+	 */
+	public static ImgView view(int[][] i) {
+		return new ImgView(i);
+	}
+
+	public static Map<String, int[][]> splitChannelsJava(int[][] i) {
+		Results res = execute("[a,r,g,b]=img_util::splitChannelsJava(i);", inputs("i", i), "a", "r", "g", "b");
+		return channels(res);
 	}
 
 	public static Map<String, int[][]> splitChannels(int[][] i) {
-		Script s = dml(SRC_UTIL + "[a,r,g,b]=img_util::splitChannels(i);").in("i", ImgUtil.iToD(i)).out("a", "r", "g",
-				"b");
-		MLResults res = s.execute();
-		Map<String, int[][]> m = new HashMap<String, int[][]>();
-		m.put("a", ImgUtil.mToI(res, "a"));
-		m.put("r", ImgUtil.mToI(res, "r"));
-		m.put("g", ImgUtil.mToI(res, "g"));
-		m.put("b", ImgUtil.mToI(res, "b"));
-		return m;
+		Results res = execute("[a,r,g,b]=img_util::splitChannels(i);", inputs("i", i), "a", "r", "g", "b");
+		return channels(res);
 	}
 
 	public static ImgChannels splitImgChannelsJava(int[][] i) {
@@ -134,19 +371,49 @@ public class ImgDml {
 		return ic;
 	}
 
+	public static ImgPackedChannels splitPackedChannels(int[][] i, Layout layout) {
+		Results res = execute("[a,r,g,b]=img_util::splitChannels(i);", inputs("i", i), "a", "r", "g", "b");
+		ImgPackedChannels pc = new ImgPackedChannels(i[0].length, i.length, layout);
+		res.toChannel("a", pc, Channel.ALPHA);
+		res.toChannel("r", pc, Channel.RED);
+		res.toChannel("g", pc, Channel.GREEN);
+		res.toChannel("b", pc, Channel.BLUE);
+		return pc;
+	}
+
 	public static int[][] combineChannelsJava(int[][] a, int[][] r, int[][] g, int[][] b) {
-		Script s = dml(SRC_UTIL + "o=img_util::combineChannelsJava(a,r,g,b);").in("a", ImgUtil.iToD(a))
-				.in("r", ImgUtil.iToD(r)).in("g", ImgUtil.iToD(g)).in("b", ImgUtil.iToD(b)).out("o");
-		MLResults res = s.execute();
-		return ImgUtil.dToI(res.getMatrix("o").to2DDoubleArray());
+		Results res = execute("o=img_util::combineChannelsJava(a,r,g,b);", inputs("a", a, "r", r, "g", g, "b", b), "o");
+		return res.toI("o");
 	}
 
 	public static int[][] combineChannels(int[][] a, int[][] r, int[][] g, int[][] b) {
-		Script s = dml(SRC_UTIL + "o=img_util::combineChannels(a,r,g,b);").in("a", ImgUtil.iToD(a))
-				.in("r", ImgUtil.iToD(r)).in("g", ImgUtil.iToD(g)).in("b", ImgUtil.iToD(b)).out("o");
-		MLResults res = s.execute();
-		// return ImgUtil.dToI(res.getMatrix("o").to2DDoubleArray());
-		return ImgUtil.mToI(res, "o");
+		Results res = execute("o=img_util::combineChannels(a,r,g,b);", inputs("a", a, "r", r, "g", g, "b", b), "o");
+		return res.toI("o");
+	}
+
+	public static int[][] combineChannels(ImgPackedChannels pc) {
+		MatrixBlock a = ImgBlocks.channelToBlock(pc, Channel.ALPHA);
+		MatrixBlock r = ImgBlocks.channelToBlock(pc, Channel.RED);
+		MatrixBlock g = ImgBlocks.channelToBlock(pc, Channel.GREEN);
+		MatrixBlock b = ImgBlocks.channelToBlock(pc, Channel.BLUE);
+		Results res = execute("o=img_util::combineChannels(a,r,g,b);", inputs("a", a, "r", r, "g", g, "b", b), "o");
+		return res.toI("o");
+	}
+
+	/**
+	 * Combines one channel with the other channels of a solid color, using
+	 * the color value directly rather than materialized color channels. An
+	 * alpha channel is given in two's complement, as returned by
+	 * splitChannels.
+	 */
+	public static int[][] combineChannels(ImgSolid color, Channel channel, int[][] c) {
+		if (color.height != c.length || color.width != c[0].length) {
+			throw new RuntimeException("Channel of size " + c[0].length + "x" + c.length
+					+ " can't be combined with a color of size " + color.width + "x" + color.height);
+		}
+		Results res = execute("o=img_util::combineColor(c,n,a,r,g,b);", inputs("c", c, "n", channel.ordinal() + 1,
+				"a", color.getAlpha(), "r", color.getRed(), "g", color.getGreen(), "b", color.getBlue()), "o");
+		return res.toI("o");
 	}
 
 	public static int[][] shiftColorChannel(int[][] i, int shift) {
@@ -154,36 +421,264 @@ public class ImgDml {
 	}
 
 	public static Map<String, int[][]> color(Color color, int w, int h) {
-		String c = color.toString();
-		Script s = dml(SRC_UTIL + "[a,r,g,b]=img_util::color(c,w,h);").in("c", c).in("w", w).in("h", h).out("a", "r",
-				"g", "b");
-		MLResults res = s.execute();
-		Map<String, int[][]> m = new HashMap<String, int[][]>();
-		m.put("a", ImgUtil.mToI(res, "a"));
-		m.put("r", ImgUtil.mToI(res, "r"));
-		m.put("g", ImgUtil.mToI(res, "g"));
-		m.put("b", ImgUtil.mToI(res, "b"));
-		return m;
+		Results res = execute("[a,r,g,b]=img_util::colorRGB(cr,cg,cb,w,h);", inputs("cr", color.getRed(), "cg",
+				color.getGreen(), "cb", color.getBlue(), "w", w, "h", h), "a", "r", "g", "b");
+		return channels(res);
 	}
 
 	public static ImgChannels colorImgChannels(Color color, int w, int h) {
-		Map<String, int[][]> m = color(color, w, h);
-		ImgChannels ic = new ImgChannels(w, h);
-		ic.alpha = m.get("a");
-		ic.red = m.get("r");
-		ic.green = m.get("g");
-		ic.blue = m.get("b");
-		return ic;
+		return solid(color, w, h).toImgChannels();
+	}
+
+	public static ImgSolid solid(Color color, int w, int h) {
+		return new ImgSolid(color, w, h);
+	}
+
+	/**
+	 * Layers an image over a solid color, using the color value directly
+	 * rather than a materialized background.
+	 */
+	public static int[][] layer(ImgSolid background, int[][] top) {
+		if (background.height != top.length || background.width != top[0].length) {
+			throw new RuntimeException("Image of size " + top[0].length + "x" + top.length
+					+ " can't be layered onto background of size " + background.width + "x" + background.height);
+		}
+		Results res = execute("o=img_util::layerColor(i,a,r,g,b);", inputs("i", ImgBlocks.overlayToBlock(top), "a",
+				background.getAlpha(), "r", background.getRed(), "g", background.getGreen(), "b", background.getBlue()),
+				"o");
+		return res.toI("o");
 	}
 
 	public static int[][] layer(int[][] i1, int[][] i2) {
-		Script s = dml(SRC_UTIL + "o=img_util::layer(i1,i2);").in("i1", ImgUtil.iToD(i1)).in("i2", ImgUtil.iToD(i2))
-				.out("o");
-		MLResults res = s.execute();
-		return ImgUtil.mToI(res, "o");
+		MatrixBlock top = ImgBlocks.overlayToBlock(i2);
+		String fn = top.isInSparseFormat() ? "layerSparse" : "layer";
+		Results res = execute("o=img_util::" + fn + "(i1,i2);", inputs("i1", i1, "i2", top), "o");
+		return res.toI("o");
+	}
+
+	public static int[][] layerLoop(int[][] i1, int[][] i2) {
+		Results res = execute("o=img_util::layerLoop(i1,i2);", inputs("i1", i1, "i2", i2), "o");
+		return res.toI("o");
+	}
+
+	public static int[][] gaussianBlur(int[][] i, double sigma) {
+		if (!(sigma > 0)) {
+			throw new RuntimeException("Sigma must be positive: " + sigma);
+		}
+		return imgUtilDml("gaussianBlur", i, sigma);
+	}
+
+	public static int[][] boxBlur(int[][] i, int radius) {
+		if (radius < 0) {
+			throw new RuntimeException("Radius must not be negative: " + radius);
+		}
+		return imgUtilDml("boxBlur", i, radius);
+	}
+
+	public static int[][] sharpen(int[][] i, double amount) {
+		return imgUtilDml("sharpen", i, amount);
+	}
+
+	public static int[][] sobel(int[][] i) {
+		return imgUtilDml("sobel", i);
+	}
+
+	/**
+	 * Convolves the color channels with a kernel that has odd dimensions. The
+	 * kernel is flipped as in mathematical convolution, so an asymmetric
+	 * kernel such as a Sobel kernel gives the opposite sign to a correlation.
+	 */
+	public static int[][] convolve(int[][] i, double[][] kernel) {
+		int fh = kernel.length;
+		int fw = kernel[0].length;
+		if (fh % 2 == 0 || fw % 2 == 0) {
+			throw new RuntimeException("Kernel dimensions must be odd: " + fh + "x" + fw);
+		}
+		MatrixBlock f = ImgBlocks.allocate(1, fh * fw);
+		double[] d = f.getDenseBlock();
+		for (int y = 0; y < fh; y++) {
+			System.arraycopy(kernel[y], 0, d, y * fw, fw);
+		}
+		f.recomputeNonZeros();
+		Results res = execute("o=img_util::convolve(i,f,fh,fw);", inputs("i", i, "f", f, "fh", fh, "fw", fw), "o");
+		return res.toI("o");
+	}
+
+	public static int[][] resize(int[][] i, int width, int height, ImgResize.Mode mode) {
+		MatrixBlock rv = ImgResize.interpolationMatrix(mode, i.length, height);
+		MatrixBlock rh = ImgResize.interpolationMatrix(mode, i[0].length, width);
+		Results res = execute("o=img_util::resize(i,rv,rh);", inputs("i", i, "rv", rv, "rh", rh), "o");
+		return res.toI("o");
+	}
+
+	/**
+	 * Scales an image so its longer side is maxSize, keeping the aspect
+	 * ratio. Downscaling averages areas and upscaling is bilinear.
+	 */
+	public static int[][] thumbnail(int[][] i, int maxSize) {
+		int h = i.length;
+		int w = i[0].length;
+		double scale = (double) maxSize / Math.max(w, h);
+		int width = Math.max(1, (int) Math.round(w * scale));
+		int height = Math.max(1, (int) Math.round(h * scale));
+		return resize(i, width, height, (scale < 1) ? ImgResize.Mode.AREA : ImgResize.Mode.BILINEAR);
+	}
+
+	public static ImgStats statistics(int[][] i) {
+		Results res = execute("[h,s]=img_util::statistics(i);", inputs("i", i), "h", "s");
+		return new ImgStats(res.get("h"), res.get("s"));
+	}
+
+	public static int[][] equalize(int[][] i) {
+		return imgUtilDml("equalize", i);
+	}
+
+	public static int[][] autoContrast(int[][] i) {
+		return imgUtilDml("autoContrast", i);
 	}
 
 	public static int[][] demo(int[][] i) {
 		return imgUtilDml("demo", i);
 	}
+
+	/**
+	 * Checks that every image of a batch has the given size, so that mixed
+	 * sizes fail here rather than when the batch is reshaped in DML.
+	 */
+	protected static void checkBatch(List<int[][]> images, int h, int w) {
+		for (int k = 0; k < images.size(); k++) {
+			int[][] i = images.get(k);
+			if (i.length != h || i[0].length != w) {
+				throw new RuntimeException("Image " + k + " of size " + i[0].length + "x" + i.length
+						+ " doesn't match batch image size " + w + "x" + h);
+			}
+		}
+	}
+
+	protected static List<int[][]> imgUtilDmlBatch(String function, List<int[][]> images, boolean transposed) {
+		if (images.isEmpty()) {
+			return new ArrayList<int[][]>();
+		}
+		int h = images.get(0).length;
+		int w = images.get(0)[0].length;
+		checkBatch(images, h, w);
+		Results res = execute("o=img_util::" + function + "Batch(i,h,w)", inputs("i", images, "h", h, "w", w), "o");
+		return transposed ? res.toList("o", w, h) : res.toList("o", h, w);
+	}
+
+	public static List<int[][]> splitVertical(List<int[][]> images) {
+		return imgUtilDmlBatch("splitVertical", images, false);
+	}
+
+	public static List<int[][]> flipHorizontal(List<int[][]> images) {
+		return imgUtilDmlBatch("flipHorizontal", images, false);
+	}
+
+	public static List<int[][]> flipVertical(List<int[][]> images) {
+		return imgUtilDmlBatch("flipVertical", images, false);
+	}
+
+	public static List<int[][]> transpose(List<int[][]> images) {
+		return imgUtilDmlBatch("transpose", images, true);
+	}
+
+	public static List<int[][]> rotate90(List<int[][]> images) {
+		return imgUtilDmlBatch("rotate90", images, true);
+	}
+
+	public static List<int[][]> rotate180(List<int[][]> images) {
+		return imgUtilDmlBatch("rotate180", images, false);
+	}
+
+	public static List<int[][]> rotate270(List<int[][]> images) {
+		return imgUtilDmlBatch("rotate270", images, true);
+	}
+
+	public static List<ImgChannels> splitImgChannels(List<int[][]> images) {
+		if (images.isEmpty()) {
+			return new ArrayList<ImgChannels>();
+		}
+		int h = images.get(0).length;
+		int w = images.get(0)[0].length;
+		checkBatch(images, h, w);
+		Results res = execute("[a,r,g,b]=img_util::splitChannels(i);", inputs("i", images), "a", "r", "g", "b");
+		List<int[][]> a = res.toList("a", h, w);
+		List<int[][]> r = res.toList("r", h, w);
+		List<int[][]> g = res.toList("g", h, w);
+		List<int[][]> b = res.toList("b", h, w);
+		List<ImgChannels> l = new ArrayList<ImgChannels>(images.size());
+		for (int k = 0; k < images.size(); k++) {
+			ImgChannels ic = new ImgChannels(w, h);
+			ic.alpha = a.get(k);
+			ic.red = r.get(k);
+			ic.green = g.get(k);
+			ic.blue = b.get(k);
+			l.add(ic);
+		}
+		return l;
+	}
+
+	public static List<int[][]> combineImgChannels(List<ImgChannels> channels) {
+		int n = channels.size();
+		if (n == 0) {
+			return new ArrayList<int[][]>();
+		}
+		int h = channels.get(0).height;
+		int w = channels.get(0).width;
+		List<int[][]> a = new ArrayList<int[][]>(n);
+		List<int[][]> r = new ArrayList<int[][]>(n);
+		List<int[][]> g = new ArrayList<int[][]>(n);
+		List<int[][]> b = new ArrayList<int[][]>(n);
+		for (ImgChannels ic : channels) {
+			if (ic.height != h || ic.width != w) {
+				throw new RuntimeException("Channels of size " + ic.width + "x" + ic.height
+						+ " don't match batch image size " + w + "x" + h);
+			}
+			a.add(ic.alpha);
+			r.add(ic.red);
+			g.add(ic.green);
+			b.add(ic.blue);
+		}
+		Results res = execute("o=img_util::combineChannels(a,r,g,b);", inputs("a", a, "r", r, "g", g, "b", b), "o");
+		return res.toList("o", h, w);
+	}
+
+	public static List<int[][]> shiftColorChannel(List<int[][]> channels, int shift) {
+		if (channels.isEmpty()) {
+			return new ArrayList<int[][]>();
+		}
+		int h = channels.get(0).length;
+		int w = channels.get(0)[0].length;
+		checkBatch(channels, h, w);
+		Results res = execute("o=img_util::shiftColorChannel(i,x)", inputs("i", channels, "x", shift), "o");
+		return res.toList("o", h, w);
+	}
+
+	public static List<int[][]> layer(List<int[][]> i1, List<int[][]> i2) {
+		if (i1.size() != i2.size()) {
+			throw new RuntimeException("Batches of " + i1.size() + " and " + i2.size() + " images can't be layered");
+		}
+		if (i1.isEmpty()) {
+			return new ArrayList<int[][]>();
+		}
+		int h = i1.get(0).length;
+		int w = i1.get(0)[0].length;
+		checkBatch(i1, h, w);
+		checkBatch(i2, h, w);
+		Results res = execute("o=img_util::layer(i1,i2);", inputs("i1", i1, "i2", i2), "o");
+		return res.toList("o", h, w);
+	}
+
+	public static List<int[][]> layer(int[][] i1, List<int[][]> i2) {
+		if (i2.isEmpty()) {
+			return new ArrayList<int[][]>();
+		}
+		int h = i1.length;
+		int w = i1[0].length;
+		checkBatch(i2, h, w);
+		List<int[][]> bottom = new ArrayList<int[][]>(1);
+		bottom.add(i1);
+		Results res = execute("o=img_util::layerBatch(i1,i2);", inputs("i1", bottom, "i2", i2), "o");
+		return res.toList("o", h, w);
+	}
 }
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.sysml.image.backend.Backend;
+import org.apache.sysml.image.backend.JmlcBackend;
+
+/**
+ * Runs ImgDml operations concurrently from many threads. The engine holds a
+ * bounded pool of backends (one JMLC connection each by default), and an
+ * operation borrows a backend for its duration as the thread backend of
+ * ImgDml, so at most parallelism operations execute at once.
+ * 
+ * <pre>
+ * try (ImgEngine engine = new ImgEngine(4)) {
+ * 	int[][] o = engine.run(() -&gt; ImgDml.rotate90(i));
+ * 	CompletableFuture&lt;int[][]&gt; f = engine.submit(() -&gt; pipeline.execute(i));
+ * }
+ * </pre>
+ * 
+ * submit runs operations on the engine's own threads. It accepts at most
+ * parallelism + maxQueued operations that haven't completed, and blocks the
+ * caller beyond that (trySubmit fails instead), which pushes back on
+ * producers that are faster than the engine. run, submit and trySubmit
+ * throw IllegalStateException once the engine is closed.
+ */
+public class ImgEngine implements Closeable {
+
+	private final int parallelism;
+	private final List<Backend> backends;
+	private final BlockingQueue<Backend> available;
+	private final Semaphore pending;
+	private final ExecutorService executor;
+	private volatile boolean closed = false;
+
+	/**
+	 * Engine with JMLC backends that queues up to parallelism operations
+	 * beyond those executing.
+	 */
+	public ImgEngine(int parallelism) {
+		this(parallelism, parallelism, JmlcBackend::new);
+	}
+
+	/**
+	 * @param parallelism
+	 *            Number of backends, and so of operations that execute at once
+	 * @param maxQueued
+	 *            Number of submitted operations that can wait for a backend
+	 *            before submit blocks
+	 * @param backendFactory
+	 *            Creates the backends
+	 */
+	public ImgEngine(int parallelism, int maxQueued, Supplier<Backend> backendFactory) {
+		if (parallelism < 1 || maxQueued < 0) {
+			throw new IllegalArgumentException("Invalid parallelism " + parallelism + " or queue size " + maxQueued);
+		}
+		this.parallelism = parallelism;
+		backends = new ArrayList<Backend>(parallelism);
+		available = new ArrayBlockingQueue<Backend>(parallelism);
+		try {
+			for (int n = 0; n < parallelism; n++) {
+				Backend b = backendFactory.get();
+				backends.add(b);
+				available.add(b);
+			}
+		} catch (RuntimeException | Error e) {
+			for (Backend b : backends) {
+				b.close();
+			}
+			throw e;
+		}
+		pending = new Semaphore(parallelism + maxQueued);
+		AtomicInteger threads = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(parallelism, r -> {
+			Thread t = new Thread(r, "img-engine-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Number of backends not in use.
+	 */
+	public int getAvailableBackends() {
+		return available.size();
+	}
+
+	/**
+	 * Runs an operation on the calling thread with a backend from the pool,
+	 * waiting for one if all are in use.
+	 */
+	public <T> T run(Callable<T> op) {
+		checkOpen();
+		return runWithBackend(op);
+	}
+
+	protected void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Engine is closed");
+		}
+	}
+
+	protected <T> T runWithBackend(Callable<T> op) {
+		Backend b;
+		try {
+			b = available.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted waiting for a backend", e);
+		}
+		Backend previous = ImgDml.getThreadBackend();
+		ImgDml.setThreadBackend(b);
+		try {
+			return op.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException("Error running image operation", e);
+		} finally {
+			ImgDml.setThreadBackend(previous);
+			available.add(b);
+		}
+	}
+
+	/**
+	 * Runs an operation on the engine's threads. Blocks while the engine
+	 * already has parallelism + maxQueued operations in progress.
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> op) {
+		checkOpen();
+		try {
+			pending.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted waiting to submit", e);
+		}
+		return supply(op);
+	}
+
+	/**
+	 * Runs an operation on the engine's threads, or returns a future failed
+	 * with RejectedExecutionException if the engine is still full after the
+	 * timeout.
+	 */
+	public <T> CompletableFuture<T> trySubmit(Callable<T> op, long timeout, TimeUnit unit) {
+		checkOpen();
+		try {
+			if (!pending.tryAcquire(timeout, unit)) {
+				CompletableFuture<T> f = new CompletableFuture<T>();
+				f.completeExceptionally(new RejectedExecutionException("Engine is full"));
+				return f;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted waiting to submit", e);
+		}
+		return supply(op);
+	}
+
+	protected <T> CompletableFuture<T> supply(Callable<T> op) {
+		try {
+			CompletableFuture<T> f = CompletableFuture.supplyAsync(() -> runWithBackend(op), executor);
+			f.whenComplete((r, e) -> pending.release());
+			return f;
+		} catch (RejectedExecutionException e) {
+			pending.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for submitted operations to finish and closes the backends.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (Backend b : backends) {
+			b.close();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+/**
+ * In-JVM implementations of the pixel permutations (flips, rotations,
+ * transpose, transverse and splitVertical). Each operation is a single pass
+ * over the pixels. Operations that transpose the image walk it in square
+ * blocks so that both the source and destination stay in cache, and large
+ * images are split across threads by destination rows. Results are identical
+ * to the corresponding img_util functions.
+ *
+ * Packed pixel arrays are in row-major order.
+ */
+public class ImgGeometry {
+
+	/**
+	 * Side of the square blocks used by transposing operations (64x64 ints is
+	 * 16KB, which fits in L1 alongside the destination block).
+	 */
+	public static final int BLOCK_SIZE = 64;
+
+	public static int[][] rotate90(int[][] i) {
+		return transpose(i, true, false);
+	}
+
+	public static int[][] rotate180(int[][] i) {
+		return rows(i, true, true, 0);
+	}
+
+	public static int[][] rotate270(int[][] i) {
+		return transpose(i, false, true);
+	}
+
+	public static int[][] flipHorizontal(int[][] i) {
+		return rows(i, false, true, 0);
+	}
+
+	public static int[][] flipVertical(int[][] i) {
+		return rows(i, true, false, 0);
+	}
+
+	public static int[][] transpose(int[][] i) {
+		return transpose(i, false, false);
+	}
+
+	public static int[][] transverse(int[][] i) {
+		return transpose(i, true, true);
+	}
+
+	public static int[][] splitVertical(int[][] i) {
+		return rows(i, false, false, splitVerticalShift(i[0].length));
+	}
+
+	public static int[] rotate90(int[] pixels, int width, int height) {
+		return transpose(pixels, width, height, true, false);
+	}
+
+	public static int[] rotate180(int[] pixels, int width, int height) {
+		return rows(pixels, width, height, true, true, 0);
+	}
+
+	public static int[] rotate270(int[] pixels, int width, int height) {
+		return transpose(pixels, width, height, false, true);
+	}
+
+	public static int[] flipHorizontal(int[] pixels, int width, int height) {
+		return rows(pixels, width, height, false, true, 0);
+	}
+
+	public static int[] flipVertical(int[] pixels, int width, int height) {
+		return rows(pixels, width, height, true, false, 0);
+	}
+
+	public static int[] transpose(int[] pixels, int width, int height) {
+		return transpose(pixels, width, height, false, false);
+	}
+
+	public static int[] transverse(int[] pixels, int width, int height) {
+		return transpose(pixels, width, height, true, true);
+	}
+
+	public static int[] splitVertical(int[] pixels, int width, int height) {
+		return rows(pixels, width, height, false, false, splitVerticalShift(width));
+	}
+
+	/**
+	 * Number of columns splitVertical moves from the left to the right side,
+	 * matching round(c/2)-1 in img_util::splitVertical.
+	 */
+	public static int splitVerticalShift(int width) {
+		return (int) Math.round(width / 2.0) - 1;
+	}
+
+	/**
+	 * Output pixel (r, c) of a width x height image is input pixel (y, x),
+	 * where y is c (or height-1-c if reverseRows) and x is r (or width-1-r if
+	 * reverseCols).
+	 */
+	protected static int[][] transpose(int[][] i, boolean reverseRows, boolean reverseCols) {
+		int height = i.length;
+		int width = i[0].length;
+		int[][] o = new int[width][height];
+		ImgBlocks.parallelRows(width, height, (rl, ru) -> {
+			for (int rb = rl; rb < ru; rb += BLOCK_SIZE) {
+				int re = Math.min(ru, rb + BLOCK_SIZE);
+				for (int cb = 0; cb < height; cb += BLOCK_SIZE) {
+					int ce = Math.min(height, cb + BLOCK_SIZE);
+					for (int r = rb; r < re; r++) {
+						int[] row = o[r];
+						int x = reverseCols ? width - 1 - r : r;
+						for (int c = cb; c < ce; c++) {
+							row[c] = i[reverseRows ? height - 1 - c : c][x];
+						}
+					}
+				}
+			}
+		});
+		return o;
+	}
+
+	protected static int[] transpose(int[] pixels, int width, int height, boolean reverseRows,
+			boolean reverseCols) {
+		int[] o = new int[width * height];
+		ImgBlocks.parallelRows(width, height, (rl, ru) -> {
+			for (int rb = rl; rb < ru; rb += BLOCK_SIZE) {
+				int re = Math.min(ru, rb + BLOCK_SIZE);
+				for (int cb = 0; cb < height; cb += BLOCK_SIZE) {
+					int ce = Math.min(height, cb + BLOCK_SIZE);
+					for (int r = rb; r < re; r++) {
+						int x = reverseCols ? width - 1 - r : r;
+						for (int c = cb, p = r * height + cb; c < ce; c++, p++) {
+							o[p] = pixels[(reverseRows ? height - 1 - c : c) * width + x];
+						}
+					}
+				}
+			}
+		});
+		return o;
+	}
+
+	/**
+	 * Output row r is input row r (or height-1-r if reverseRows), with its
+	 * columns reversed if reverseCols, or rotated left by shift columns.
+	 */
+	protected static int[][] rows(int[][] i, boolean reverseRows, boolean reverseCols, int shift) {
+		int height = i.length;
+		int width = i[0].length;
+		int[][] o = new int[height][width];
+		ImgBlocks.parallelRows(height, width, (rl, ru) -> {
+			for (int r = rl; r < ru; r++) {
+				copyRow(i[reverseRows ? height - 1 - r : r], 0, o[r], 0, width, reverseCols, shift);
+			}
+		});
+		return o;
+	}
+
+	protected static int[] rows(int[] pixels, int width, int height, boolean reverseRows, boolean reverseCols,
+			int shift) {
+		int[] o = new int[width * height];
+		ImgBlocks.parallelRows(height, width, (rl, ru) -> {
+			for (int r = rl; r < ru; r++) {
+				copyRow(pixels, (reverseRows ? height - 1 - r : r) * width, o, r * width, width, reverseCols, shift);
+			}
+		});
+		return o;
+	}
+
+	private static void copyRow(int[] src, int srcPos, int[] dst, int dstPos, int width, boolean reverse,
+			int shift) {
+		if (reverse) {
+			for (int x = 0, s = srcPos + width - 1; x < width; x++, s--) {
+				dst[dstPos + x] = src[s];
+			}
+		} else {
+			System.arraycopy(src, srcPos + shift, dst, dstPos, width - shift);
+			System.arraycopy(src, srcPos, dst, dstPos + width - shift, shift);
+		}
+	}
+}
@@ -19,70 +19,136 @@
 
 package org.apache.sysml.image;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import org.apache.sysml.image.ImageExample.Channel;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.sysml.image.ImgPackedChannels.Layout;
+import org.apache.sysml.image.metrics.Meter;
+import org.apache.sysml.image.metrics.Metrics.Phase;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
 
 public class ImgIO {
 
 	public static int[][] buffToI(BufferedImage bi) {
+		try (Meter meter = Meter.start("buffToI", Phase.CONVERT_IN)) {
+			return doBuffToI(bi);
+		}
+	}
+
+	private static int[][] doBuffToI(BufferedImage bi) {
 		int width = bi.getWidth();
 		int height = bi.getHeight();
 		int[][] i = new int[height][width];
 		for (int y = 0; y < height; y++) {
-			int[] row = new int[width];
-			bi.getRGB(0, y, width, 1, row, 0, 1);
-			i[y] = row;
+			getRow(bi, y, i[y]);
 		}
 		return i;
 	}
 
 	public static BufferedImage iToBuff(int[][] i) {
+		try (Meter meter = Meter.start("iToBuff", Phase.CONVERT_OUT)) {
+			return doIToBuff(i);
+		}
+	}
+
+	private static BufferedImage doIToBuff(int[][] i) {
 		int width = i[0].length;
 		int height = i.length;
 		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 		for (int y = 0; y < height; y++) {
-			int[] row = i[y];
-			bi.setRGB(0, y, width, 1, row, 0, 1);
+			setRow(bi, y, i[y]);
 		}
 		return bi;
 	}
 
+	public static int[] buffToPixels(BufferedImage bi) {
+		try (Meter meter = Meter.start("buffToPixels", Phase.CONVERT_IN)) {
+			return doBuffToPixels(bi);
+		}
+	}
+
+	private static int[] doBuffToPixels(BufferedImage bi) {
+		int width = bi.getWidth();
+		int height = bi.getHeight();
+		int[] pixels = new int[width * height];
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			getRow(bi, y, row);
+			System.arraycopy(row, 0, pixels, y * width, width);
+		}
+		return pixels;
+	}
+
+	public static BufferedImage pixelsToBuff(int[] pixels, int width, int height) {
+		try (Meter meter = Meter.start("pixelsToBuff", Phase.CONVERT_OUT)) {
+			return doPixelsToBuff(pixels, width, height);
+		}
+	}
+
+	private static BufferedImage doPixelsToBuff(int[] pixels, int width, int height) {
+		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] data = ((DataBufferInt) bi.getRaster().getDataBuffer()).getData();
+		System.arraycopy(pixels, 0, data, 0, width * height);
+		return bi;
+	}
+
 	public static ImgChannels buffToImgChannels(BufferedImage bi) {
+		try (Meter meter = Meter.start("buffToImgChannels", Phase.CONVERT_IN)) {
+			return doBuffToImgChannels(bi);
+		}
+	}
+
+	private static ImgChannels doBuffToImgChannels(BufferedImage bi) {
 		int width = bi.getWidth();
 		int height = bi.getHeight();
 		ImgChannels ic = new ImgChannels(width, height);
+		ImgKernels k = ImgKernels.get();
+		int[] row = new int[width];
 		for (int y = 0; y < height; y++) {
-			int[] row = new int[width];
-			bi.getRGB(0, y, width, 1, row, 0, 1);
-			for (int x = 0; x < width; x++) {
-				ic.alpha[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.ALPHA);
-				ic.red[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.RED);
-				ic.green[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.GREEN);
-				ic.blue[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.BLUE);
-			}
+			getRow(bi, y, row);
+			k.unpack(row, ic.alpha[y], ic.red[y], ic.green[y], ic.blue[y], width);
 		}
 		return ic;
 	}
 
 	public static Map<String, int[][]> buffToChannels(BufferedImage bi) {
+		try (Meter meter = Meter.start("buffToChannels", Phase.CONVERT_IN)) {
+			return doBuffToChannels(bi);
+		}
+	}
+
+	private static Map<String, int[][]> doBuffToChannels(BufferedImage bi) {
 		int width = bi.getWidth();
 		int height = bi.getHeight();
 		int[][] alpha = new int[height][width];
 		int[][] red = new int[height][width];
 		int[][] green = new int[height][width];
 		int[][] blue = new int[height][width];
+		ImgKernels k = ImgKernels.get();
+		int[] row = new int[width];
 		for (int y = 0; y < height; y++) {
-			int[] row = new int[width];
-			bi.getRGB(0, y, width, 1, row, 0, 1);
-			for (int x = 0; x < width; x++) {
-				alpha[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.ALPHA);
-				red[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.RED);
-				green[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.GREEN);
-				blue[y][x] = ImgUtil.obtainPixelByChannel(row[x], Channel.BLUE);
-			}
+			getRow(bi, y, row);
+			k.unpack(row, alpha[y], red[y], green[y], blue[y], width);
 		}
 		Map<String, int[][]> m = new HashMap<String, int[][]>();
 		m.put("a", alpha);
@@ -91,4 +157,301 @@ public class ImgIO {
 		m.put("b", blue);
 		return m;
 	}
+
+	public static ImgPackedChannels buffToPackedChannels(BufferedImage bi, Layout layout) {
+		try (Meter meter = Meter.start("buffToPackedChannels", Phase.CONVERT_IN)) {
+			return doBuffToPackedChannels(bi, layout);
+		}
+	}
+
+	private static ImgPackedChannels doBuffToPackedChannels(BufferedImage bi, Layout layout) {
+		int width = bi.getWidth();
+		int height = bi.getHeight();
+		ImgPackedChannels pc = new ImgPackedChannels(width, height, layout);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			getRow(bi, y, row);
+			for (int x = 0; x < width; x++) {
+				pc.setPixel(x, y, row[x]);
+			}
+		}
+		return pc;
+	}
+
+	public static BufferedImage packedChannelsToBuff(ImgPackedChannels pc) {
+		try (Meter meter = Meter.start("packedChannelsToBuff", Phase.CONVERT_OUT)) {
+			return doPackedChannelsToBuff(pc);
+		}
+	}
+
+	private static BufferedImage doPackedChannelsToBuff(ImgPackedChannels pc) {
+		int width = pc.width;
+		int height = pc.height;
+		BufferedImage bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				row[x] = pc.getPixel(x, y);
+			}
+			setRow(bi, y, row);
+		}
+		return bi;
+	}
+
+	/**
+	 * Opens an ImageReader on a File, InputStream or ImageInputStream. Close
+	 * it with closeReader.
+	 */
+	public static ImageReader openReader(Object input) throws IOException {
+		ImageInputStream iis = (input instanceof ImageInputStream) ? (ImageInputStream) input
+				: ImageIO.createImageInputStream(input);
+		if (iis == null) {
+			throw new IOException("Couldn't open " + input);
+		}
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+		if (!readers.hasNext()) {
+			if (iis != input) {
+				iis.close();
+			}
+			throw new IOException("No image reader for " + input);
+		}
+		ImageReader reader = readers.next();
+		reader.setInput(iis, false, true);
+		return reader;
+	}
+
+	/**
+	 * Disposes a reader from openReader, closing its stream unless it was
+	 * given as an ImageInputStream.
+	 */
+	public static void closeReader(ImageReader reader, Object input) throws IOException {
+		Object iis = reader.getInput();
+		reader.dispose();
+		if (iis != input && iis instanceof ImageInputStream) {
+			((ImageInputStream) iis).close();
+		}
+	}
+
+	/**
+	 * Width and height of the first image of an input, read from its header
+	 * without decoding pixels.
+	 */
+	public static Dimension readSize(Object input) throws IOException {
+		ImageReader reader = openReader(input);
+		try {
+			return new Dimension(reader.getWidth(0), reader.getHeight(0));
+		} finally {
+			closeReader(reader, input);
+		}
+	}
+
+	/**
+	 * Decodes a region of an image, keeping every subsampling-th pixel in
+	 * each direction. The result is ceil(w/subsampling) x ceil(h/subsampling)
+	 * pixels, and only those are stored, so memory is in proportion to the
+	 * result rather than to the full image. Decoding time is not: readers of
+	 * row-sequential formats such as PNG and JPEG decode every row down to
+	 * the bottom of the region.
+	 * 
+	 * @param region
+	 *            Source region, or null for the whole image
+	 * @param subsampling
+	 *            1 for every pixel, 2 for every other pixel, and so on
+	 */
+	public static BufferedImage read(ImageReader reader, Rectangle region, int subsampling) throws IOException {
+		if (subsampling < 1) {
+			throw new IllegalArgumentException("Invalid subsampling " + subsampling);
+		}
+		ImageReadParam param = reader.getDefaultReadParam();
+		if (region != null) {
+			param.setSourceRegion(region);
+		}
+		if (subsampling > 1) {
+			param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		}
+		return reader.read(0, param);
+	}
+
+	/**
+	 * Decodes a region of a File, InputStream or ImageInputStream. See
+	 * read(ImageReader, Rectangle, int).
+	 */
+	public static BufferedImage read(Object input, Rectangle region, int subsampling) throws IOException {
+		ImageReader reader = openReader(input);
+		try {
+			return read(reader, region, subsampling);
+		} finally {
+			closeReader(reader, input);
+		}
+	}
+
+	public static int[][] readI(Object input, Rectangle region, int subsampling) throws IOException {
+		return buffToI(read(input, region, subsampling));
+	}
+
+	public static int[] readPixels(Object input, Rectangle region, int subsampling) throws IOException {
+		return buffToPixels(read(input, region, subsampling));
+	}
+
+	public static ImgPackedChannels readPackedChannels(Object input, Rectangle region, int subsampling,
+			Layout layout) throws IOException {
+		return buffToPackedChannels(read(input, region, subsampling), layout);
+	}
+
+	public static MatrixBlock readBlock(Object input, Rectangle region, int subsampling) throws IOException {
+		return ImgBlocks.buffToBlock(read(input, region, subsampling));
+	}
+
+	/**
+	 * Whether ImageIO has a writer for the format.
+	 */
+	public static boolean hasWriter(String format) {
+		return ImageIO.getImageWritersByFormatName(format).hasNext();
+	}
+
+	/**
+	 * Returns the image, or a copy without alpha if no writer for the format
+	 * can encode it as is (ImageIO.write returns false for ARGB jpg and bmp).
+	 */
+	public static BufferedImage forFormat(BufferedImage bi, String format) {
+		if (ImageIO.getImageWriters(ImageTypeSpecifier.createFromRenderedImage(bi), format).hasNext()) {
+			return bi;
+		}
+		int width = bi.getWidth();
+		int height = bi.getHeight();
+		BufferedImage rgb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] row = new int[width];
+		for (int y = 0; y < height; y++) {
+			getRow(bi, y, row);
+			setRow(rgb, y, row);
+		}
+		return rgb;
+	}
+
+	/**
+	 * Names of the files written from the given input file names in a
+	 * format: each base name plus the format's suffix, or the whole input
+	 * name plus the suffix where base names collide (a.png and a.jpg are
+	 * written as a.png.png and a.jpg.png). A name that still repeats gets a
+	 * numeric suffix (a.png.jpg is then written as a.png-1.png), so no output
+	 * overwrites another.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if two inputs have the same name
+	 */
+	public static List<String> outputNames(List<String> names, String format) {
+		Map<String, Integer> bases = new HashMap<String, Integer>();
+		Set<String> seen = new HashSet<String>();
+		for (String name : names) {
+			if (!seen.add(name)) {
+				throw new IllegalArgumentException("More than one input named " + name);
+			}
+			bases.merge(baseName(name), 1, Integer::sum);
+		}
+		List<String> stems = new ArrayList<String>(names.size());
+		Set<String> used = new HashSet<String>();
+		for (String name : names) {
+			String base = baseName(name);
+			String stem = (bases.get(base) > 1) ? name : base;
+			stems.add(stem);
+			used.add(stem + "." + format);
+		}
+		List<String> out = new ArrayList<String>(names.size());
+		Set<String> written = new HashSet<String>();
+		for (String stem : stems) {
+			String name = stem + "." + format;
+			// a suffixed name must not take the name of another input either
+			for (int n = 1; written.contains(name) || (n > 1 && used.contains(name)); n++) {
+				name = stem + "-" + n + "." + format;
+			}
+			written.add(name);
+			out.add(name);
+		}
+		return out;
+	}
+
+	public static String baseName(String name) {
+		int dot = name.lastIndexOf('.');
+		return (dot > 0) ? name.substring(0, dot) : name;
+	}
+
+	/**
+	 * Reads a row of ARGB pixels. The backing data buffer is read directly for
+	 * TYPE_INT_ARGB, TYPE_INT_RGB, TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR images,
+	 * which gives the same values as getRGB. Other image types use getRGB.
+	 */
+	public static void getRow(BufferedImage bi, int y, int[] row) {
+		int width = bi.getWidth();
+		WritableRaster raster = bi.getRaster();
+		switch (bi.getType()) {
+		case BufferedImage.TYPE_INT_ARGB: {
+			int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+			System.arraycopy(data, intOffset(raster, y), row, 0, width);
+			return;
+		}
+		case BufferedImage.TYPE_INT_RGB: {
+			int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+			int off = intOffset(raster, y);
+			for (int x = 0; x < width; x++) {
+				row[x] = 0xFF000000 | data[off + x];
+			}
+			return;
+		}
+		case BufferedImage.TYPE_3BYTE_BGR:
+		case BufferedImage.TYPE_4BYTE_ABGR: {
+			byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+			ComponentSampleModel csm = (ComponentSampleModel) raster.getSampleModel();
+			int[] bands = csm.getBandOffsets();
+			int pixelStride = csm.getPixelStride();
+			int off = byteOffset(raster, y);
+			int r = off + bands[0];
+			int g = off + bands[1];
+			int b = off + bands[2];
+			if (bands.length > 3) {
+				int a = off + bands[3];
+				for (int x = 0, p = 0; x < width; x++, p += pixelStride) {
+					row[x] = ((data[a + p] & 0xFF) << 24) | ((data[r + p] & 0xFF) << 16) | ((data[g + p] & 0xFF) << 8)
+							| (data[b + p] & 0xFF);
+				}
+			} else {
+				for (int x = 0, p = 0; x < width; x++, p += pixelStride) {
+					row[x] = 0xFF000000 | ((data[r + p] & 0xFF) << 16) | ((data[g + p] & 0xFF) << 8)
+							| (data[b + p] & 0xFF);
+				}
+			}
+			return;
+		}
+		default:
+			bi.getRGB(0, y, width, 1, row, 0, 1);
+		}
+	}
+
+	/**
+	 * Writes a row of ARGB pixels. The backing data buffer is written directly
+	 * for TYPE_INT_ARGB images. Other image types use setRGB.
+	 */
+	public static void setRow(BufferedImage bi, int y, int[] row) {
+		int width = bi.getWidth();
+		if (bi.getType() == BufferedImage.TYPE_INT_ARGB) {
+			WritableRaster raster = bi.getRaster();
+			int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+			System.arraycopy(row, 0, data, intOffset(raster, y), width);
+		} else {
+			bi.setRGB(0, y, width, 1, row, 0, 1);
+		}
+	}
+
+	protected static int intOffset(WritableRaster raster, int y) {
+		SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		int x0 = -raster.getSampleModelTranslateX();
+		int y0 = -raster.getSampleModelTranslateY();
+		return raster.getDataBuffer().getOffset() + (y0 + y) * sm.getScanlineStride() + x0;
+	}
+
+	protected static int byteOffset(WritableRaster raster, int y) {
+		ComponentSampleModel sm = (ComponentSampleModel) raster.getSampleModel();
+		int x0 = -raster.getSampleModelTranslateX();
+		int y0 = -raster.getSampleModelTranslateY();
+		return raster.getDataBuffer().getOffset() + (y0 + y) * sm.getScanlineStride() + x0 * sm.getPixelStride();
+	}
 }
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+/**
+ * Pixel kernels on rows of packed ARGB pixels and int channels. get returns
+ * the Vector API implementation (VectorImgKernels) when it was compiled (the
+ * vector profile, JDK 17+) and the JVM runs with --add-modules
+ * jdk.incubator.vector, and the scalar implementation otherwise. Both give
+ * bit-exact results. Setting the system property sysml.image.kernels to
+ * "scalar" forces the scalar implementation.
+ */
+public interface ImgKernels {
+
+	/**
+	 * Unpacks pixels into channels. Alpha is in two's complement (-128 to 127)
+	 * and colors are 0 to 255, as returned by ImgUtil.obtainPixelByChannel.
+	 */
+	public void unpack(int[] pixels, int[] a, int[] r, int[] g, int[] b, int len);
+
+	/**
+	 * Packs channels into pixels, as ImgUtil.combineChannels.
+	 */
+	public void pack(int[] a, int[] r, int[] g, int[] b, int[] pixels, int len);
+
+	/**
+	 * Adds shift to channel values, clamping to 0 to 255, as
+	 * ImgUtil.shiftChannel.
+	 */
+	public void shift(int[] channel, int shift, int len);
+
+	/**
+	 * Layers top pixels over bottom pixels, as img_util::layer. Transparent
+	 * top pixels give the bottom pixel and opaque top pixels give the top
+	 * pixel. Otherwise colors are blended in double precision and packed as
+	 * layer packs them, so the result is the same as layer's bit for bit.
+	 */
+	public void blend(int[] bottom, int[] top, int[] out, int len);
+
+	public String getName();
+
+	public static ImgKernels get() {
+		return Holder.KERNELS;
+	}
+
+	static class Holder {
+		static final ImgKernels KERNELS = load();
+
+		static ImgKernels load() {
+			if (!"scalar".equals(System.getProperty("sysml.image.kernels"))) {
+				try {
+					Class<?> c = Class.forName("org.apache.sysml.image.VectorImgKernels");
+					return (ImgKernels) c.getDeclaredConstructor().newInstance();
+				} catch (Throwable t) {
+					// not compiled, not Java 17+ or jdk.incubator.vector not added
+				}
+			}
+			return new ScalarImgKernels();
+		}
+	}
+}
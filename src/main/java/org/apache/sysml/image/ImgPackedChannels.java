@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import org.apache.sysml.image.ImageExample.Channel;
+
+/**
+ * ARGB channels stored in a single row-major byte array, with one byte per
+ * sample. The channels are either planar (all alpha samples, then all red
+ * samples, and so on) or interleaved (the four samples of a pixel next to
+ * each other). As in ImgChannels, alpha values are returned in two's
+ * complement (-128 to 127) and color values are returned as 0 to 255.
+ */
+public class ImgPackedChannels {
+
+	public enum Layout {
+		PLANAR, INTERLEAVED
+	}
+
+	public static final int NUM_CHANNELS = 4;
+
+	public final int width;
+	public final int height;
+	public final Layout layout;
+	public final byte[] data;
+
+	public ImgPackedChannels(int width, int height, Layout layout) {
+		this(width, height, layout, new byte[NUM_CHANNELS * width * height]);
+	}
+
+	public ImgPackedChannels(int width, int height, Layout layout, byte[] data) {
+		if (data.length != NUM_CHANNELS * width * height) {
+			throw new RuntimeException("Data length " + data.length + " doesn't match " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		this.layout = layout;
+		this.data = data;
+	}
+
+	/**
+	 * Offset in data of the first sample of a channel.
+	 */
+	public int channelOffset(Channel channel) {
+		return (layout == Layout.PLANAR) ? channel.ordinal() * width * height : channel.ordinal();
+	}
+
+	/**
+	 * Distance in data between two horizontally adjacent samples of a channel.
+	 */
+	public int pixelStride() {
+		return (layout == Layout.PLANAR) ? 1 : NUM_CHANNELS;
+	}
+
+	public int index(Channel channel, int x, int y) {
+		return channelOffset(channel) + (y * width + x) * pixelStride();
+	}
+
+	public int get(Channel channel, int x, int y) {
+		byte b = data[index(channel, x, y)];
+		return (channel == Channel.ALPHA) ? b : b & 0xFF;
+	}
+
+	public void set(Channel channel, int x, int y, int value) {
+		data[index(channel, x, y)] = (byte) value;
+	}
+
+	public int getPixel(int x, int y) {
+		return ImgUtil.combineChannels(get(Channel.ALPHA, x, y), get(Channel.RED, x, y), get(Channel.GREEN, x, y),
+				get(Channel.BLUE, x, y));
+	}
+
+	public void setPixel(int x, int y, int argb) {
+		set(Channel.ALPHA, x, y, argb >> 24);
+		set(Channel.RED, x, y, argb >> 16);
+		set(Channel.GREEN, x, y, argb >> 8);
+		set(Channel.BLUE, x, y, argb);
+	}
+
+	public ChannelView channel(Channel channel) {
+		return new ChannelView(channel);
+	}
+
+	public ChannelView alpha() {
+		return channel(Channel.ALPHA);
+	}
+
+	public ChannelView red() {
+		return channel(Channel.RED);
+	}
+
+	public ChannelView green() {
+		return channel(Channel.GREEN);
+	}
+
+	public ChannelView blue() {
+		return channel(Channel.BLUE);
+	}
+
+	public ImgChannels toImgChannels() {
+		ImgChannels ic = new ImgChannels(width, height);
+		ic.alpha = alpha().toArray();
+		ic.red = red().toArray();
+		ic.green = green().toArray();
+		ic.blue = blue().toArray();
+		return ic;
+	}
+
+	public static ImgPackedChannels fromImgChannels(ImgChannels ic, Layout layout) {
+		ImgPackedChannels pc = new ImgPackedChannels(ic.width, ic.height, layout);
+		pc.alpha().fromArray(ic.alpha);
+		pc.red().fromArray(ic.red);
+		pc.green().fromArray(ic.green);
+		pc.blue().fromArray(ic.blue);
+		return pc;
+	}
+
+	/**
+	 * View of a single channel. Reads and writes go to the backing data.
+	 */
+	public class ChannelView {
+		public final Channel channel;
+		private final int offset;
+		private final int stride;
+
+		protected ChannelView(Channel channel) {
+			this.channel = channel;
+			this.offset = channelOffset(channel);
+			this.stride = pixelStride();
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public int get(int x, int y) {
+			byte b = data[offset + (y * width + x) * stride];
+			return (channel == Channel.ALPHA) ? b : b & 0xFF;
+		}
+
+		public void set(int x, int y, int value) {
+			data[offset + (y * width + x) * stride] = (byte) value;
+		}
+
+		public int[][] toArray() {
+			int[][] i = new int[height][width];
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					i[y][x] = get(x, y);
+				}
+			}
+			return i;
+		}
+
+		public void fromArray(int[][] i) {
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					set(x, y, i[y][x]);
+				}
+			}
+		}
+	}
+}
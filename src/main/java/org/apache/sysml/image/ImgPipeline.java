@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.sysml.image.ImageExample.Channel;
+
+/**
+ * Records a sequence of img_util operations and runs them as a single DML
+ * script. Intermediate images stay as SystemML matrices, so the input is
+ * converted once and the output is converted once. Parameters are passed as
+ * script inputs, so the script text only depends on the sequence of
+ * operations and a compiled script can be reused by the backend.
+ */
+public class ImgPipeline {
+
+	private final List<String> statements = new ArrayList<String>();
+	private final Map<String, Object> params = new LinkedHashMap<String, Object>();
+	private int step = 0;
+	private ImgTransform pending = ImgTransform.IDENTITY;
+
+	public ImgPipeline splitVertical() {
+		return apply("splitVertical");
+	}
+
+	public ImgPipeline flipHorizontal() {
+		return transform(ImgTransform.FLIP_HORIZONTAL);
+	}
+
+	public ImgPipeline flipVertical() {
+		return transform(ImgTransform.FLIP_VERTICAL);
+	}
+
+	public ImgPipeline transpose() {
+		return transform(ImgTransform.TRANSPOSE);
+	}
+
+	public ImgPipeline rotate90() {
+		return transform(ImgTransform.ROTATE_90);
+	}
+
+	public ImgPipeline rotate180() {
+		return transform(ImgTransform.ROTATE_180);
+	}
+
+	public ImgPipeline rotate270() {
+		return transform(ImgTransform.ROTATE_270);
+	}
+
+	/**
+	 * Adds a flip, rotation or transpose. Consecutive transforms are folded
+	 * into one and identities are dropped, so they add at most one statement.
+	 */
+	public ImgPipeline transform(ImgTransform t) {
+		pending = pending.then(t);
+		return this;
+	}
+
+	public ImgPipeline demo() {
+		return apply("demo");
+	}
+
+	public ImgPipeline shiftColorChannel(Channel channel, int shift) {
+		switch (channel) {
+		case RED:
+			return shiftColorChannels(shift, 0, 0);
+		case GREEN:
+			return shiftColorChannels(0, shift, 0);
+		case BLUE:
+			return shiftColorChannels(0, 0, shift);
+		default:
+			throw new RuntimeException("Not a color channel: " + channel);
+		}
+	}
+
+	public ImgPipeline shiftColorChannels(int red, int green, int blue) {
+		String in = current();
+		String out = next();
+		statements.add("[a,r,g,b]=img_util::splitChannels(" + in + ");");
+		if (red != 0) {
+			statements.add("r=img_util::shiftColorChannel(r," + param(red) + ");");
+		}
+		if (green != 0) {
+			statements.add("g=img_util::shiftColorChannel(g," + param(green) + ");");
+		}
+		if (blue != 0) {
+			statements.add("b=img_util::shiftColorChannel(b," + param(blue) + ");");
+		}
+		statements.add(out + "=img_util::combineChannels(a,r,g,b);");
+		return this;
+	}
+
+	/**
+	 * Keeps one channel of the current image and takes the other channels
+	 * from a solid color, which is passed as scalars rather than channels.
+	 */
+	public ImgPipeline combineWith(ImgSolid color, Channel channel) {
+		String in = current();
+		char c = "argb".charAt(channel.ordinal());
+		statements.add("[a,r,g,b]=img_util::splitChannels(" + in + ");");
+		statements.add(next() + "=img_util::combineColor(" + c + "," + (channel.ordinal() + 1) + ","
+				+ param(color.getAlpha()) + "," + param(color.getRed()) + "," + param(color.getGreen()) + ","
+				+ param(color.getBlue()) + ");");
+		return this;
+	}
+
+	/**
+	 * Layers the given image over the current image.
+	 */
+	public ImgPipeline layerOver(int[][] top) {
+		String in = current();
+		statements.add(next() + "=img_util::layerOverlay(" + in + "," + param(ImgBlocks.overlayToBlock(top)) + ","
+				+ ImgBlocks.SPARSE_OVERLAY_FRACTION + ");");
+		return this;
+	}
+
+	/**
+	 * Layers the current image over the given background image.
+	 */
+	public ImgPipeline layerOnto(int[][] background) {
+		String in = current();
+		statements.add(next() + "=img_util::layerOverlay(" + param(background) + "," + in + ","
+				+ ImgBlocks.SPARSE_OVERLAY_FRACTION + ");");
+		return this;
+	}
+
+	/**
+	 * Layers the current image over a solid color, which is passed as scalars
+	 * rather than a background image.
+	 */
+	public ImgPipeline layerOnto(ImgSolid background) {
+		String in = current();
+		statements.add(next() + "=img_util::layerColor(" + in + "," + param(background.getAlpha()) + ","
+				+ param(background.getRed()) + "," + param(background.getGreen()) + "," + param(background.getBlue())
+				+ ");");
+		return this;
+	}
+
+	public String getScript() {
+		String out = current();
+		StringBuilder sb = new StringBuilder();
+		for (String statement : statements) {
+			sb.append(statement).append("\n");
+		}
+		sb.append("o=").append(out).append(";\n");
+		return sb.toString();
+	}
+
+	public int[][] execute(int[][] i) {
+		Map<String, Object> inputs = new LinkedHashMap<String, Object>();
+		inputs.put("i", i);
+		inputs.putAll(params);
+		return ImgDml.execute(getScript(), inputs, "o").toI("o");
+	}
+
+	protected ImgPipeline apply(String function) {
+		String in = current();
+		statements.add(next() + "=img_util::" + function + "(" + in + ");");
+		return this;
+	}
+
+	protected String param(Object value) {
+		String name = "p" + (params.size() + 1);
+		params.put(name, value);
+		return name;
+	}
+
+	/**
+	 * Returns the variable of the current image, first adding the statement
+	 * for any pending transform.
+	 */
+	protected String current() {
+		if (pending != ImgTransform.IDENTITY) {
+			ImgTransform t = pending;
+			pending = ImgTransform.IDENTITY;
+			String in = var();
+			statements.add(next() + "=img_util::" + t.getDmlFunction() + "(" + in + ");");
+		}
+		return var();
+	}
+
+	protected String var() {
+		return (step == 0) ? "i" : "i" + step;
+	}
+
+	protected String next() {
+		step++;
+		return var();
+	}
+}
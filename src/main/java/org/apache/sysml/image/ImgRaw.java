@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.sysml.image.ImageExample.Channel;
+import org.apache.sysml.image.ImgPackedChannels.Layout;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * Uncompressed planar image files, so a corpus can be decoded once and then
+ * read repeatedly without decoding. A file is a header followed by the
+ * alpha, red, green and blue planes, each with one byte per sample in
+ * row-major order.
+ *
+ * <pre>
+ * magic "SIMG", version, width, height, channels, layout, bytes per sample, reserved
+ * </pre>
+ *
+ * Header fields are big-endian ints. Files are read through memory-mapped
+ * planes, so reading a region only touches the pages holding its rows.
+ */
+public class ImgRaw {
+
+	public static final int MAGIC = 0x53494D47; // "SIMG"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+	public static final int LAYOUT_PLANAR = 0;
+	public static final int BYTES_PER_SAMPLE = 1;
+
+	/**
+	 * Number of rows decoded at a time when converting an image file whose
+	 * reader can seek to rows.
+	 */
+	public static final int CONVERT_STRIP_HEIGHT = 256;
+
+	/**
+	 * Largest strip, in bytes of decoded pixels, when converting an image
+	 * file whose reader can't seek to rows.
+	 */
+	public static final long CONVERT_MAX_STRIP_BYTES = 256L << 20;
+
+	public static void write(File file, ImgPackedChannels pc) throws IOException {
+		Writer writer = new Writer(file, pc.width, pc.height);
+		try {
+			writer.write(0, 0, pc);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Converts an image file to a raw file. The image is decoded in strips of
+	 * rows, so an image larger than a strip is never held in memory whole.
+	 * Readers of row-sequential formats such as PNG and JPEG decode every row
+	 * above a strip to reach it, so for those the strips are as tall as
+	 * CONVERT_MAX_STRIP_BYTES allows: most images convert in a single pass,
+	 * and an image of s strips decodes about s/2 times its rows.
+	 */
+	public static void convert(File image, File raw) throws IOException {
+		ImgTiles.ImageReaderSource src = new ImgTiles.ImageReaderSource(image);
+		try {
+			int width = src.getWidth();
+			int height = src.getHeight();
+			Writer writer = new Writer(raw, width, height);
+			try {
+				int strip = stripHeight(width, height, src.isRandomAccessEasy());
+				for (int y = 0; y < height; y += strip) {
+					writer.write(0, y, src.read(0, y, width, Math.min(strip, height - y)));
+				}
+			} finally {
+				writer.close();
+			}
+		} finally {
+			src.close();
+		}
+	}
+
+	/**
+	 * Converts an image file, or every file in a directory, to raw files in
+	 * the output directory.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2) {
+			System.err.println("Usage: ImgRaw <image file or directory> <output directory>");
+			System.exit(1);
+		}
+		File in = new File(args[0]);
+		File outDir = new File(args[1]);
+		outDir.mkdirs();
+		File[] files = in.isDirectory() ? in.listFiles() : new File[] { in };
+		for (File f : files) {
+			if (f.isFile()) {
+				String name = f.getName();
+				int dot = name.lastIndexOf('.');
+				File out = new File(outDir, ((dot > 0) ? name.substring(0, dot) : name) + ".simg");
+				convert(f, out);
+				System.out.println(f + " -> " + out);
+			}
+		}
+	}
+
+	protected static int stripHeight(int width, int height, boolean randomAccess) {
+		if (randomAccess) {
+			return CONVERT_STRIP_HEIGHT;
+		}
+		// decoded strip plus its int[][] copy
+		long rows = CONVERT_MAX_STRIP_BYTES / (8L * width);
+		return (int) Math.max(CONVERT_STRIP_HEIGHT, Math.min(height, rows));
+	}
+
+	protected static long planeOffset(int plane, int width, int height) {
+		return HEADER_SIZE + (long) plane * width * height;
+	}
+
+	/**
+	 * Reads regions of a raw file. Reads can run concurrently.
+	 */
+	public static class Reader implements ImgTiles.TileSource, Closeable {
+		private final FileChannel fc;
+		private final int width;
+		private final int height;
+		private final ByteBuffer[] planes;
+
+		public Reader(File file) throws IOException {
+			fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				int n = 0;
+				while (header.hasRemaining() && n >= 0) {
+					n = fc.read(header);
+				}
+				header.flip();
+				if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+					throw new IOException("Not a raw image file: " + file);
+				}
+				int version = header.getInt();
+				width = header.getInt();
+				height = header.getInt();
+				int channels = header.getInt();
+				int layout = header.getInt();
+				int bytesPerSample = header.getInt();
+				if (version != VERSION || channels != ImgPackedChannels.NUM_CHANNELS || layout != LAYOUT_PLANAR
+						|| bytesPerSample != BYTES_PER_SAMPLE) {
+					throw new IOException("Unsupported raw image file: " + file);
+				}
+				planes = new ByteBuffer[ImgPackedChannels.NUM_CHANNELS];
+				long planeSize = (long) width * height;
+				if (planeSize <= Integer.MAX_VALUE) {
+					for (int p = 0; p < planes.length; p++) {
+						planes[p] = fc.map(MapMode.READ_ONLY, planeOffset(p, width, height), planeSize);
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				fc.close();
+				throw e;
+			}
+		}
+
+		@Override
+		public int getWidth() {
+			return width;
+		}
+
+		@Override
+		public int getHeight() {
+			return height;
+		}
+
+		/**
+		 * Returns the rows y to y+h of a plane, positioned at row y. Planes
+		 * larger than 2 GB are mapped one region at a time.
+		 */
+		protected ByteBuffer rows(Channel channel, int y, int h) throws IOException {
+			ByteBuffer plane = planes[channel.ordinal()];
+			if (plane != null) {
+				ByteBuffer b = plane.duplicate();
+				b.position(y * width);
+				return b;
+			}
+			long offset = planeOffset(channel.ordinal(), width, height) + (long) y * width;
+			return fc.map(MapMode.READ_ONLY, offset, (long) h * width);
+		}
+
+		protected void checkRegion(int x, int y, int w, int h) {
+			if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height) {
+				throw new RuntimeException("Region " + x + "," + y + " " + w + "x" + h + " is outside image of size "
+						+ width + "x" + height);
+			}
+		}
+
+		/**
+		 * Reads a region into planar packed channels.
+		 */
+		public ImgPackedChannels readPackedChannels(int x, int y, int w, int h) {
+			checkRegion(x, y, w, h);
+			ImgPackedChannels pc = new ImgPackedChannels(w, h, Layout.PLANAR);
+			try {
+				for (Channel channel : Channel.values()) {
+					ByteBuffer b = rows(channel, y, h);
+					int start = b.position();
+					int offset = pc.channelOffset(channel);
+					for (int r = 0; r < h; r++) {
+						b.position(start + r * width + x);
+						b.get(pc.data, offset + r * w, w);
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Error reading region " + x + "," + y, e);
+			}
+			return pc;
+		}
+
+		/**
+		 * Reads a region of one channel into a dense block.
+		 */
+		public MatrixBlock readChannelBlock(Channel channel, int x, int y, int w, int h) {
+			checkRegion(x, y, w, h);
+			MatrixBlock mb = ImgBlocks.allocate(h, w);
+			double[] d = mb.getDenseBlock();
+			boolean signed = (channel == Channel.ALPHA);
+			long nnz = 0;
+			try {
+				ByteBuffer b = rows(channel, y, h);
+				int start = b.position();
+				for (int r = 0, p = 0; r < h; r++) {
+					int rowStart = start + r * width + x;
+					for (int c = 0; c < w; c++, p++) {
+						byte v = b.get(rowStart + c);
+						d[p] = signed ? v : v & 0xFF;
+						nnz += (v != 0) ? 1 : 0;
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException("Error reading region " + x + "," + y, e);
+			}
+			mb.setNonZeros(nnz);
+			return mb;
+		}
+
+		public ImgPackedChannels readPackedChannels() {
+			return readPackedChannels(0, 0, width, height);
+		}
+
+		@Override
+		public int[][] read(int x, int y, int w, int h) {
+			return ImgUtil.combineChannels(readPackedChannels(x, y, w, h));
+		}
+
+		@Override
+		public void close() throws IOException {
+			fc.close();
+		}
+	}
+
+	/**
+	 * Writes regions of a raw file. The file is created with its header and
+	 * full size, and regions can then be written in any order, so the writer
+	 * can also be used as a sink for tiled processing.
+	 */
+	public static class Writer implements ImgTiles.TileSink, Closeable {
+		private final FileChannel fc;
+		private final int width;
+		private final int height;
+
+		public Writer(File file, int width, int height) throws IOException {
+			this.width = width;
+			this.height = height;
+			fc = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.READ, StandardOpenOption.TRUNCATE_EXISTING);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(ImgPackedChannels.NUM_CHANNELS)
+						.putInt(LAYOUT_PLANAR).putInt(BYTES_PER_SAMPLE).putInt(0);
+				header.flip();
+				writeFully(header, 0);
+				// extend the file to its full size
+				writeFully(ByteBuffer.allocate(1), planeOffset(ImgPackedChannels.NUM_CHANNELS, width, height) - 1);
+			} catch (IOException | RuntimeException e) {
+				fc.close();
+				throw e;
+			}
+		}
+
+		public void write(int x, int y, ImgPackedChannels pc) throws IOException {
+			if (x < 0 || y < 0 || x + pc.width > width || y + pc.height > height) {
+				throw new IOException("Region " + x + "," + y + " " + pc.width + "x" + pc.height
+						+ " is outside image of size " + width + "x" + height);
+			}
+			byte[] row = new byte[pc.width];
+			for (Channel channel : Channel.values()) {
+				int offset = pc.channelOffset(channel);
+				int stride = pc.pixelStride();
+				for (int r = 0; r < pc.height; r++) {
+					for (int c = 0, q = offset + r * pc.width * stride; c < pc.width; c++, q += stride) {
+						row[c] = pc.data[q];
+					}
+					long pos = planeOffset(channel.ordinal(), width, height) + (long) (y + r) * width + x;
+					writeFully(ByteBuffer.wrap(row), pos);
+				}
+			}
+		}
+
+		@Override
+		public void write(int x, int y, int[][] tile) {
+			int h = tile.length;
+			int w = tile[0].length;
+			ImgPackedChannels pc = new ImgPackedChannels(w, h, Layout.PLANAR);
+			for (int r = 0; r < h; r++) {
+				for (int c = 0; c < w; c++) {
+					pc.setPixel(c, r, tile[r][c]);
+				}
+			}
+			try {
+				write(x, y, pc);
+			} catch (IOException e) {
+				throw new RuntimeException("Error writing region " + x + "," + y, e);
+			}
+		}
+
+		protected void writeFully(ByteBuffer b, long pos) throws IOException {
+			while (b.hasRemaining()) {
+				pos += fc.write(b, pos);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			fc.close();
+		}
+	}
+}
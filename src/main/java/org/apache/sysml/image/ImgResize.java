@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * Sparse interpolation matrices for img_util::resize. A matrix of size
+ * dst x src maps a source dimension to a target dimension, with each row
+ * holding the weights of the source pixels of one target pixel. Matrices
+ * are cached, so repeated target sizes reuse them. Cached matrices are
+ * shared and must not be modified.
+ */
+public class ImgResize {
+
+	public enum Mode {
+		NEAREST, BILINEAR, AREA
+	}
+
+	public static final int MAX_CACHE_ENTRIES = 64;
+
+	private static final Map<String, MatrixBlock> cache = new LinkedHashMap<String, MatrixBlock>(16, 0.75f, true) {
+		private static final long serialVersionUID = -4315683592419582733L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MatrixBlock> eldest) {
+			return size() > MAX_CACHE_ENTRIES;
+		}
+	};
+
+	public static MatrixBlock interpolationMatrix(Mode mode, int src, int dst) {
+		if (src < 1 || dst < 1) {
+			throw new RuntimeException("Invalid resize from " + src + " to " + dst);
+		}
+		String key = mode + ":" + src + ":" + dst;
+		synchronized (cache) {
+			MatrixBlock mb = cache.get(key);
+			if (mb == null) {
+				mb = createInterpolationMatrix(mode, src, dst);
+				cache.put(key, mb);
+			}
+			return mb;
+		}
+	}
+
+	protected static MatrixBlock createInterpolationMatrix(Mode mode, int src, int dst) {
+		double scale = (double) src / dst;
+		MatrixBlock mb = new MatrixBlock(dst, src, true, (long) dst * ((mode == Mode.NEAREST) ? 1 : 2));
+		for (int i = 0; i < dst; i++) {
+			switch (mode) {
+			case NEAREST: {
+				int j = Math.min(src - 1, (int) Math.floor((i + 0.5) * scale));
+				mb.appendValue(i, j, 1);
+				break;
+			}
+			case BILINEAR: {
+				double x = Math.min(src - 1, Math.max(0, (i + 0.5) * scale - 0.5));
+				int j0 = (int) Math.floor(x);
+				int j1 = Math.min(src - 1, j0 + 1);
+				double f = x - j0;
+				if (j1 == j0 || f == 0) {
+					mb.appendValue(i, j0, 1);
+				} else {
+					mb.appendValue(i, j0, 1 - f);
+					mb.appendValue(i, j1, f);
+				}
+				break;
+			}
+			case AREA: {
+				double start = i * scale;
+				double end = Math.min(src, (i + 1) * scale);
+				for (int j = (int) Math.floor(start); j < end; j++) {
+					double overlap = Math.min(end, j + 1) - Math.max(start, j);
+					if (overlap > 0) {
+						mb.appendValue(i, j, overlap / (end - start));
+					}
+				}
+				break;
+			}
+			}
+		}
+		return mb;
+	}
+
+	public static int getCacheSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	public static void clearCache() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+}
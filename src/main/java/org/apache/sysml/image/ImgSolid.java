@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.util.Arrays;
+
+import org.apache.sysml.image.ImgDml.Color;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * A solid color image, held as one ARGB value and its dimensions. Operations
+ * that layer onto or combine with a solid color use the value directly (for
+ * example img_util::layerColor and img_util::combineColor), so the pixels are
+ * only materialized when toI, toPixels, toImgChannels or toBlock is called.
+ */
+public class ImgSolid {
+	public final int argb;
+	public final int width;
+	public final int height;
+
+	public ImgSolid(int argb, int width, int height) {
+		this.argb = argb;
+		this.width = width;
+		this.height = height;
+	}
+
+	public ImgSolid(Color color, int width, int height) {
+		this(color.argb(), width, height);
+	}
+
+	/**
+	 * Alpha in two's complement (-128 to 127), as returned by splitChannels.
+	 */
+	public int getAlpha() {
+		return argb >> 24;
+	}
+
+	public int getRed() {
+		return (argb >> 16) & 0xFF;
+	}
+
+	public int getGreen() {
+		return (argb >> 8) & 0xFF;
+	}
+
+	public int getBlue() {
+		return argb & 0xFF;
+	}
+
+	public int[][] toI() {
+		int[][] i = new int[height][width];
+		for (int[] row : i) {
+			Arrays.fill(row, argb);
+		}
+		return i;
+	}
+
+	public int[] toPixels() {
+		int[] pixels = new int[width * height];
+		Arrays.fill(pixels, argb);
+		return pixels;
+	}
+
+	public ImgChannels toImgChannels() {
+		ImgChannels ic = new ImgChannels(width, height);
+		for (int y = 0; y < height; y++) {
+			Arrays.fill(ic.alpha[y], getAlpha());
+			Arrays.fill(ic.red[y], getRed());
+			Arrays.fill(ic.green[y], getGreen());
+			Arrays.fill(ic.blue[y], getBlue());
+		}
+		return ic;
+	}
+
+	public MatrixBlock toBlock() {
+		if (argb == 0) {
+			return new MatrixBlock(height, width, true);
+		}
+		MatrixBlock mb = new MatrixBlock(height, width, (double) argb);
+		mb.setNonZeros((long) width * height);
+		return mb;
+	}
+}
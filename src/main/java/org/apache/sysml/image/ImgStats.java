@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import org.apache.sysml.image.ImageExample.Channel;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * Histograms and summary statistics of the four channels of an image, as
+ * computed by img_util::statistics. Arrays are indexed by Channel ordinal,
+ * and alpha values are counted as 0-255.
+ */
+public class ImgStats {
+
+	public static final int NUM_VALUES = 256;
+
+	public final long[][] histograms = new long[ImgPackedChannels.NUM_CHANNELS][NUM_VALUES];
+	public final double[] mean = new double[ImgPackedChannels.NUM_CHANNELS];
+	public final double[] min = new double[ImgPackedChannels.NUM_CHANNELS];
+	public final double[] max = new double[ImgPackedChannels.NUM_CHANNELS];
+	public final double[] stddev = new double[ImgPackedChannels.NUM_CHANNELS];
+
+	/**
+	 * @param h
+	 *            256 x 4 histogram matrix
+	 * @param s
+	 *            4 x 4 statistics matrix (mean, min, max, standard deviation)
+	 */
+	public ImgStats(MatrixBlock h, MatrixBlock s) {
+		for (int c = 0; c < ImgPackedChannels.NUM_CHANNELS; c++) {
+			for (int v = 0; v < NUM_VALUES; v++) {
+				histograms[c][v] = (long) h.getValue(v, c);
+			}
+			mean[c] = s.getValue(c, 0);
+			min[c] = s.getValue(c, 1);
+			max[c] = s.getValue(c, 2);
+			stddev[c] = s.getValue(c, 3);
+		}
+	}
+
+	public long[] getHistogram(Channel channel) {
+		return histograms[channel.ordinal()];
+	}
+
+	public double getMean(Channel channel) {
+		return mean[channel.ordinal()];
+	}
+
+	public double getMin(Channel channel) {
+		return min[channel.ordinal()];
+	}
+
+	public double getMax(Channel channel) {
+		return max[channel.ordinal()];
+	}
+
+	public double getStddev(Channel channel) {
+		return stddev[channel.ordinal()];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Channel channel : Channel.values()) {
+			int c = channel.ordinal();
+			sb.append(channel).append(": mean=").append(mean[c]).append(", min=").append(min[c]).append(", max=")
+					.append(max[c]).append(", stddev=").append(stddev[c]).append("\n");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.imageio.ImageReader;
+
+import org.apache.sysml.image.backend.Backend;
+
+/**
+ * Processes images tile by tile so that memory is bounded by the tile size
+ * and the number of tiles processed at once, rather than the image size.
+ * Tiles are read from a TileSource, processed, and written to a TileSink,
+ * which can stitch them into an image or stream them elsewhere. Operations
+ * that need neighboring pixels get a halo of extra pixels around each tile,
+ * which is cropped from the result. Geometric operations are applied to each
+ * tile and the tile is written at its remapped position.
+ *
+ * When more than one tile is processed at once, each worker thread uses its
+ * own ImgDml backend from the backend factory, which is closed when the
+ * worker finishes.
+ */
+public class ImgTiles {
+
+	public interface TileSource {
+		public int getWidth();
+
+		public int getHeight();
+
+		public int[][] read(int x, int y, int w, int h);
+	}
+
+	/**
+	 * Receives processed tiles. Tiles may be written concurrently from several
+	 * threads, but never to overlapping regions.
+	 */
+	public interface TileSink {
+		public void write(int x, int y, int[][] tile);
+	}
+
+	/**
+	 * Operation applied to a tile. The result must have the size of the tile.
+	 */
+	public interface TileOp {
+		public int[][] apply(int[][] tile);
+	}
+
+	protected interface TileTask {
+		public void run(int x, int y, int w, int h);
+	}
+
+	public static final int DEFAULT_TILE_SIZE = 1024;
+
+	private final int tileSize;
+	private final int halo;
+	private final int parallelism;
+	private final Supplier<Backend> backendFactory;
+
+	public ImgTiles(int tileSize) {
+		this(tileSize, 0, 1, null);
+	}
+
+	/**
+	 * @param tileSize
+	 *            Width and height of the tiles
+	 * @param halo
+	 *            Number of neighboring pixels read around each tile
+	 * @param parallelism
+	 *            Number of tiles processed at once
+	 * @param backendFactory
+	 *            Creates the backend of each worker thread, or null to use the
+	 *            backend of the calling thread (only with a parallelism of 1)
+	 */
+	public ImgTiles(int tileSize, int halo, int parallelism, Supplier<Backend> backendFactory) {
+		if (tileSize < 1 || halo < 0 || parallelism < 1) {
+			throw new RuntimeException("Invalid tiling: tile size " + tileSize + ", halo " + halo + ", parallelism "
+					+ parallelism);
+		}
+		if (parallelism > 1 && backendFactory == null) {
+			throw new RuntimeException("A backend factory is needed to process " + parallelism + " tiles at once");
+		}
+		this.tileSize = tileSize;
+		this.halo = halo;
+		this.parallelism = parallelism;
+		this.backendFactory = backendFactory;
+	}
+
+	/**
+	 * Applies an operation that keeps the image size, such as a channel shift
+	 * or a filter.
+	 */
+	public void apply(TileSource src, TileSink sink, TileOp op) {
+		int width = src.getWidth();
+		int height = src.getHeight();
+		run(src, -1, (x, y, w, h) -> {
+			int hx = Math.max(0, x - halo);
+			int hy = Math.max(0, y - halo);
+			int hw = Math.min(width, x + w + halo) - hx;
+			int hh = Math.min(height, y + h + halo) - hy;
+			int[][] tile = op.apply(src.read(hx, hy, hw, hh));
+			sink.write(x, y, (halo == 0) ? tile : crop(tile, x - hx, y - hy, w, h));
+		});
+	}
+
+	/**
+	 * Layers tiles of the top image over the same tiles of the bottom image.
+	 */
+	public void layer(TileSource bottom, TileSource top, TileSink sink) {
+		if (bottom.getWidth() != top.getWidth() || bottom.getHeight() != top.getHeight()) {
+			throw new RuntimeException("Images of different sizes can't be layered");
+		}
+		run(bottom, -1, (x, y, w, h) -> sink.write(x, y, ImgDml.layer(bottom.read(x, y, w, h), top.read(x, y, w, h))));
+	}
+
+	public void rotate90(TileSource src, TileSink sink) {
+		int height = src.getHeight();
+		run(src, -1, (x, y, w, h) -> sink.write(height - y - h, x, ImgDml.rotate90(src.read(x, y, w, h))));
+	}
+
+	public void rotate180(TileSource src, TileSink sink) {
+		int width = src.getWidth();
+		int height = src.getHeight();
+		run(src, -1, (x, y, w, h) -> sink.write(width - x - w, height - y - h, ImgDml.rotate180(src.read(x, y, w, h))));
+	}
+
+	public void rotate270(TileSource src, TileSink sink) {
+		int width = src.getWidth();
+		run(src, -1, (x, y, w, h) -> sink.write(y, width - x - w, ImgDml.rotate270(src.read(x, y, w, h))));
+	}
+
+	public void flipHorizontal(TileSource src, TileSink sink) {
+		int width = src.getWidth();
+		run(src, -1, (x, y, w, h) -> sink.write(width - x - w, y, ImgDml.flipHorizontal(src.read(x, y, w, h))));
+	}
+
+	public void flipVertical(TileSource src, TileSink sink) {
+		int height = src.getHeight();
+		run(src, -1, (x, y, w, h) -> sink.write(x, height - y - h, ImgDml.flipVertical(src.read(x, y, w, h))));
+	}
+
+	public void transpose(TileSource src, TileSink sink) {
+		run(src, -1, (x, y, w, h) -> sink.write(y, x, ImgDml.transpose(src.read(x, y, w, h))));
+	}
+
+	/**
+	 * splitVertical only moves columns, so tiles are split at the middle
+	 * column and copied to their new position.
+	 */
+	public void splitVertical(TileSource src, TileSink sink) {
+		int width = src.getWidth();
+		int mid = (int) Math.round(width / 2.0) - 1;
+		run(src, mid, (x, y, w, h) -> sink.write((x >= mid) ? x - mid : x + width - mid, y, src.read(x, y, w, h)));
+	}
+
+	protected void run(TileSource src, int cutX, TileTask task) {
+		List<int[]> tiles = tiles(src.getWidth(), src.getHeight(), cutX);
+		if (parallelism == 1) {
+			if (backendFactory == null) {
+				for (int[] t : tiles) {
+					task.run(t[0], t[1], t[2], t[3]);
+				}
+				return;
+			}
+			Backend previous = ImgDml.getThreadBackend();
+			Backend b = backendFactory.get();
+			ImgDml.setThreadBackend(b);
+			try {
+				for (int[] t : tiles) {
+					task.run(t[0], t[1], t[2], t[3]);
+				}
+			} finally {
+				ImgDml.setThreadBackend(previous);
+				b.close();
+			}
+			return;
+		}
+		List<Backend> backends = Collections.synchronizedList(new ArrayList<Backend>(parallelism));
+		// each worker creates its backend in its first task, so an error from
+		// the factory fails that task and is reported by its future
+		ThreadLocal<Backend> backend = ThreadLocal.withInitial(() -> {
+			Backend b = backendFactory.get();
+			backends.add(b);
+			return b;
+		});
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>(tiles.size());
+			for (int[] t : tiles) {
+				futures.add(pool.submit(() -> {
+					ImgDml.setThreadBackend(backend.get());
+					task.run(t[0], t[1], t[2], t[3]);
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error processing tile", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted processing tiles", e);
+		} finally {
+			pool.shutdownNow();
+			close(pool, backends);
+		}
+	}
+
+	/**
+	 * Waits for the workers to finish and closes their backends.
+	 */
+	protected static void close(ExecutorService pool, List<Backend> backends) {
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (backends) {
+			for (Backend b : backends) {
+				b.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the tiles (x, y, w, h) covering an image. If cutX is not
+	 * negative, no tile crosses column cutX.
+	 */
+	protected List<int[]> tiles(int width, int height, int cutX) {
+		List<Integer> xs = new ArrayList<Integer>();
+		for (int x = 0; x < width; x += tileSize) {
+			if (cutX > x && cutX < x + tileSize) {
+				xs.add(x);
+				xs.add(cutX);
+			} else {
+				xs.add(x);
+			}
+		}
+		xs.add(width);
+		List<int[]> tiles = new ArrayList<int[]>();
+		for (int y = 0; y < height; y += tileSize) {
+			int h = Math.min(tileSize, height - y);
+			for (int k = 0; k < xs.size() - 1; k++) {
+				int x = xs.get(k);
+				int w = Math.min(xs.get(k + 1), width) - x;
+				if (w > 0) {
+					tiles.add(new int[] { x, y, w, h });
+				}
+			}
+		}
+		return tiles;
+	}
+
+	public static int[][] crop(int[][] i, int x, int y, int w, int h) {
+		int[][] c = new int[h][w];
+		for (int r = 0; r < h; r++) {
+			System.arraycopy(i[y + r], x, c[r], 0, w);
+		}
+		return c;
+	}
+
+	/**
+	 * Tile source over an image held in memory.
+	 */
+	public static class ArraySource implements TileSource {
+		private final int[][] i;
+
+		public ArraySource(int[][] i) {
+			this.i = i;
+		}
+
+		@Override
+		public int getWidth() {
+			return i[0].length;
+		}
+
+		@Override
+		public int getHeight() {
+			return i.length;
+		}
+
+		@Override
+		public int[][] read(int x, int y, int w, int h) {
+			return crop(i, x, y, w, h);
+		}
+	}
+
+	/**
+	 * Tile source that decodes the region of each tile from an image file, so
+	 * the whole image is never held in memory. Readers of row-sequential
+	 * formats such as PNG and JPEG decode every row above a tile to reach it.
+	 */
+	public static class ImageReaderSource implements TileSource, Closeable {
+		private final File file;
+		private final ImageReader reader;
+		private final int width;
+		private final int height;
+
+		public ImageReaderSource(File file) throws IOException {
+			this.file = file;
+			reader = ImgIO.openReader(file);
+			try {
+				width = reader.getWidth(0);
+				height = reader.getHeight(0);
+			} catch (IOException | RuntimeException e) {
+				ImgIO.closeReader(reader, file);
+				throw e;
+			}
+		}
+
+		@Override
+		public int getWidth() {
+			return width;
+		}
+
+		@Override
+		public int getHeight() {
+			return height;
+		}
+
+		/**
+		 * Whether the reader can decode a region without decoding the rows
+		 * above it, which is false for PNG and JPEG.
+		 */
+		public boolean isRandomAccessEasy() throws IOException {
+			return reader.isRandomAccessEasy(0);
+		}
+
+		@Override
+		public synchronized int[][] read(int x, int y, int w, int h) {
+			try {
+				return ImgIO.buffToI(ImgIO.read(reader, new Rectangle(x, y, w, h), 1));
+			} catch (IOException e) {
+				throw new RuntimeException("Error reading tile at " + x + "," + y, e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			ImgIO.closeReader(reader, file);
+		}
+	}
+
+	/**
+	 * Tile sink that stitches tiles into an image held in memory.
+	 */
+	public static class ArraySink implements TileSink {
+		public final int[][] i;
+
+		public ArraySink(int width, int height) {
+			i = new int[height][width];
+		}
+
+		@Override
+		public void write(int x, int y, int[][] tile) {
+			for (int r = 0; r < tile.length; r++) {
+				System.arraycopy(tile[r], 0, i[y + r], x, tile[r].length);
+			}
+		}
+	}
+
+	/**
+	 * Tile sink that stitches tiles into a BufferedImage.
+	 */
+	public static class BufferedImageSink implements TileSink {
+		public final BufferedImage bi;
+
+		public BufferedImageSink(int width, int height) {
+			bi = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		}
+
+		@Override
+		public void write(int x, int y, int[][] tile) {
+			for (int r = 0; r < tile.length; r++) {
+				bi.setRGB(x, y + r, tile[r].length, 1, tile[r], 0, tile[r].length);
+			}
+		}
+	}
+}
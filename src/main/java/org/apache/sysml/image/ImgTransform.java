@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+/**
+ * The eight flips, rotations and transposes of an image (the dihedral group
+ * of the square). Any sequence of them is one of the eight, so a chain of
+ * geometric operations can be folded with then and applied in one pass.
+ * 
+ * Output pixel (r, c) of a transform is input pixel (y, x), where for
+ * transforms that don't transpose y is r and x is c, and for those that do y
+ * is c and x is r, with y reversed if reverseRows and x reversed if
+ * reverseCols.
+ */
+public enum ImgTransform {
+	IDENTITY(false, false, false, null),
+	FLIP_VERTICAL(false, true, false, "flipVertical"),
+	FLIP_HORIZONTAL(false, false, true, "flipHorizontal"),
+	ROTATE_180(false, true, true, "rotate180"),
+	TRANSPOSE(true, false, false, "transpose"),
+	ROTATE_90(true, true, false, "rotate90"),
+	ROTATE_270(true, false, true, "rotate270"),
+	TRANSVERSE(true, true, true, "transverse");
+
+	private final boolean transposed;
+	private final boolean reverseRows;
+	private final boolean reverseCols;
+	private final String dmlFunction;
+
+	ImgTransform(boolean transposed, boolean reverseRows, boolean reverseCols, String dmlFunction) {
+		this.transposed = transposed;
+		this.reverseRows = reverseRows;
+		this.reverseCols = reverseCols;
+		this.dmlFunction = dmlFunction;
+	}
+
+	public static ImgTransform of(boolean transposed, boolean reverseRows, boolean reverseCols) {
+		for (ImgTransform t : values()) {
+			if (t.transposed == transposed && t.reverseRows == reverseRows && t.reverseCols == reverseCols) {
+				return t;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * The transform that applies this transform and then next.
+	 */
+	public ImgTransform then(ImgTransform next) {
+		if (transposed) {
+			return of(!next.transposed, reverseRows ^ next.reverseCols, reverseCols ^ next.reverseRows);
+		}
+		return of(next.transposed, reverseRows ^ next.reverseRows, reverseCols ^ next.reverseCols);
+	}
+
+	/**
+	 * Folds a sequence of transforms, applied in order, into one.
+	 */
+	public static ImgTransform fold(ImgTransform... transforms) {
+		ImgTransform t = IDENTITY;
+		for (ImgTransform next : transforms) {
+			t = t.then(next);
+		}
+		return t;
+	}
+
+	public ImgTransform inverse() {
+		for (ImgTransform t : values()) {
+			if (then(t) == IDENTITY) {
+				return t;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	public boolean isTransposed() {
+		return transposed;
+	}
+
+	/**
+	 * Name of the img_util function for the transform, or null for IDENTITY.
+	 */
+	public String getDmlFunction() {
+		return dmlFunction;
+	}
+
+	/**
+	 * Applies the transform in one pass. IDENTITY returns a copy.
+	 */
+	public int[][] apply(int[][] i) {
+		return transposed ? ImgGeometry.transpose(i, reverseRows, reverseCols)
+				: ImgGeometry.rows(i, reverseRows, reverseCols, 0);
+	}
+
+	public int[] apply(int[] pixels, int width, int height) {
+		return transposed ? ImgGeometry.transpose(pixels, width, height, reverseRows, reverseCols)
+				: ImgGeometry.rows(pixels, width, height, reverseRows, reverseCols, 0);
+	}
+
+	/**
+	 * Input pixel index (y * width + x) of output pixel (r, c), for an input
+	 * of the given size.
+	 */
+	public int sourceIndex(int r, int c, int width, int height) {
+		int y = transposed ? c : r;
+		int x = transposed ? r : c;
+		if (reverseRows) {
+			y = height - 1 - y;
+		}
+		if (reverseCols) {
+			x = width - 1 - x;
+		}
+		return y * width + x;
+	}
+}
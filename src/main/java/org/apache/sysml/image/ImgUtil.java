@@ -22,10 +22,18 @@ package org.apache.sysml.image;
 import org.apache.sysml.api.mlcontext.MLResults;
 import org.apache.sysml.api.mlcontext.Matrix;
 import org.apache.sysml.image.ImageExample.Channel;
+import org.apache.sysml.image.metrics.Meter;
+import org.apache.sysml.image.metrics.Metrics.Phase;
 
 public class ImgUtil {
 
 	public static int[][] dToI(double[][] d) {
+		try (Meter meter = Meter.start("dToI", Phase.CONVERT_OUT)) {
+			return doDToI(d);
+		}
+	}
+
+	private static int[][] doDToI(double[][] d) {
 		int[][] i = new int[d.length][d[0].length];
 		for (int r = 0; r < d.length; r++) {
 			for (int c = 0; c < d[0].length; c++) {
@@ -36,6 +44,12 @@ public class ImgUtil {
 	}
 
 	public static double[][] iToD(int[][] i) {
+		try (Meter meter = Meter.start("iToD", Phase.CONVERT_IN)) {
+			return doIToD(i);
+		}
+	}
+
+	private static double[][] doIToD(int[][] i) {
 		double[][] d = new double[i.length][i[0].length];
 		for (int r = 0; r < i.length; r++) {
 			for (int c = 0; c < i[0].length; c++) {
@@ -46,11 +60,23 @@ public class ImgUtil {
 	}
 
 	public static int[][] mToI(Matrix m) {
-		return dToI(m.to2DDoubleArray());
+		try (Meter meter = Meter.start("mToI", Phase.CONVERT_OUT)) {
+			return doMToI(m);
+		}
+	}
+
+	private static int[][] doMToI(Matrix m) {
+		return ImgBlocks.blockToI(m.toMatrixBlock());
 	}
 
 	public static int[][] mToI(MLResults res, String mName) {
-		return dToI(res.getMatrix(mName).to2DDoubleArray());
+		try (Meter meter = Meter.start("mToI", Phase.CONVERT_OUT)) {
+			return doMToI(res, mName);
+		}
+	}
+
+	private static int[][] doMToI(MLResults res, String mName) {
+		return ImgBlocks.blockToI(res.getMatrix(mName).toMatrixBlock());
 	}
 
 	public static int obtainPixelByChannel(int pixel, Channel channel) {
@@ -76,26 +102,57 @@ public class ImgUtil {
 		int width = alpha[0].length;
 		int height = alpha.length;
 		int[][] result = new int[height][width];
+		ImgKernels k = ImgKernels.get();
 		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				result[y][x] = ImgUtil.combineChannels(alpha[y][x], red[y][x], green[y][x], blue[y][x]);
-			}
+			k.pack(alpha[y], red[y], green[y], blue[y], result[y], width);
 		}
 		return result;
 	}
 
 	public static void shiftChannel(int[][] channel, int shift) {
 		int width = channel[0].length;
-		int height = channel.length;
+		ImgKernels k = ImgKernels.get();
+		for (int[] row : channel) {
+			k.shift(row, shift, width);
+		}
+	}
+
+	/**
+	 * Layers top over bottom in Java with ImgKernels.blend, giving the same
+	 * pixels as img_util::layer.
+	 */
+	public static int[][] blend(int[][] bottom, int[][] top) {
+		int width = bottom[0].length;
+		int height = bottom.length;
+		int[][] result = new int[height][width];
+		ImgKernels k = ImgKernels.get();
 		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				int val = channel[y][x] + shift;
+			k.blend(bottom[y], top[y], result[y], width);
+		}
+		return result;
+	}
+
+	public static int[][] combineChannels(ImgPackedChannels pc) {
+		int[][] result = new int[pc.height][pc.width];
+		for (int y = 0; y < pc.height; y++) {
+			for (int x = 0; x < pc.width; x++) {
+				result[y][x] = pc.getPixel(x, y);
+			}
+		}
+		return result;
+	}
+
+	public static void shiftChannel(ImgPackedChannels pc, Channel channel, int shift) {
+		ImgPackedChannels.ChannelView view = pc.channel(channel);
+		for (int y = 0; y < pc.height; y++) {
+			for (int x = 0; x < pc.width; x++) {
+				int val = view.get(x, y) + shift;
 				if (val > 255) {
-					channel[y][x] = 255;
+					view.set(x, y, 255);
 				} else if (val < 0) {
-					channel[y][x] = 0;
+					view.set(x, y, 0);
 				} else {
-					channel[y][x] = val;
+					view.set(x, y, val);
 				}
 			}
 		}
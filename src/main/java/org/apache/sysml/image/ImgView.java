@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+/**
+ * An image with a deferred chain of flips, rotations and transposes. Each
+ * operation only folds into the view's ImgTransform, so identities such as
+ * rotate90 followed by rotate270 cost nothing, and the pixels are permuted
+ * once when toI is called (or read through getPixel without permuting).
+ * Views are immutable and share the source image, which must not be changed
+ * while they are in use.
+ */
+public class ImgView {
+	private final int[][] source;
+	private final ImgTransform transform;
+
+	public ImgView(int[][] source) {
+		this(source, ImgTransform.IDENTITY);
+	}
+
+	public ImgView(int[][] source, ImgTransform transform) {
+		this.source = source;
+		this.transform = transform;
+	}
+
+	public ImgView transform(ImgTransform next) {
+		return new ImgView(source, transform.then(next));
+	}
+
+	public ImgView flipHorizontal() {
+		return transform(ImgTransform.FLIP_HORIZONTAL);
+	}
+
+	public ImgView flipVertical() {
+		return transform(ImgTransform.FLIP_VERTICAL);
+	}
+
+	public ImgView transpose() {
+		return transform(ImgTransform.TRANSPOSE);
+	}
+
+	public ImgView rotate90() {
+		return transform(ImgTransform.ROTATE_90);
+	}
+
+	public ImgView rotate180() {
+		return transform(ImgTransform.ROTATE_180);
+	}
+
+	public ImgView rotate270() {
+		return transform(ImgTransform.ROTATE_270);
+	}
+
+	public ImgTransform getTransform() {
+		return transform;
+	}
+
+	public int[][] getSource() {
+		return source;
+	}
+
+	public int getWidth() {
+		return transform.isTransposed() ? source.length : source[0].length;
+	}
+
+	public int getHeight() {
+		return transform.isTransposed() ? source[0].length : source.length;
+	}
+
+	public int getPixel(int x, int y) {
+		int width = source[0].length;
+		int p = transform.sourceIndex(y, x, width, source.length);
+		return source[p / width][p % width];
+	}
+
+	/**
+	 * Applies the folded transform with ImgDml.transform.
+	 */
+	public int[][] toI() {
+		return ImgDml.transform(source, transform);
+	}
+}
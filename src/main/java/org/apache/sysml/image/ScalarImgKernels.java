@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+/**
+ * Scalar pixel kernels, without branches in the unpack, pack and shift loops.
+ */
+public class ScalarImgKernels implements ImgKernels {
+
+	@Override
+	public void unpack(int[] pixels, int[] a, int[] r, int[] g, int[] b, int len) {
+		for (int x = 0; x < len; x++) {
+			int p = pixels[x];
+			a[x] = p >> 24;
+			r[x] = (p >> 16) & 0xFF;
+			g[x] = (p >> 8) & 0xFF;
+			b[x] = p & 0xFF;
+		}
+	}
+
+	@Override
+	public void pack(int[] a, int[] r, int[] g, int[] b, int[] pixels, int len) {
+		for (int x = 0; x < len; x++) {
+			pixels[x] = (a[x] << 24) | (r[x] << 16) | (g[x] << 8) | b[x];
+		}
+	}
+
+	@Override
+	public void shift(int[] channel, int shift, int len) {
+		for (int x = 0; x < len; x++) {
+			channel[x] = Math.min(255, Math.max(0, channel[x] + shift));
+		}
+	}
+
+	@Override
+	public void blend(int[] bottom, int[] top, int[] out, int len) {
+		for (int x = 0; x < len; x++) {
+			out[x] = blend(bottom[x], top[x]);
+		}
+	}
+
+	public static int blend(int bottom, int top) {
+		int ta = top >>> 24;
+		if (ta == 0) {
+			return bottom;
+		} else if (ta == 255) {
+			return top;
+		}
+		// same operations in the same order as img_util::layer
+		double f2 = ta / 255.0;
+		double f1 = 1 - f2;
+		double r = ((top >> 16) & 0xFF) * f2 + ((bottom >> 16) & 0xFF) * f1;
+		double g = ((top >> 8) & 0xFF) * f2 + ((bottom >> 8) & 0xFF) * f1;
+		double b = (top & 0xFF) * f2 + (bottom & 0xFF) * f1;
+		return (int) (-16777216.0 + r * 65536 + g * 256 + b);
+	}
+
+	@Override
+	public String getName() {
+		return "scalar";
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.backend;
+
+import java.util.Map;
+
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * Executes DML scripts for ImgDml. Inputs are matrices (MatrixBlock) or
+ * scalars (Integer, Double, String), and outputs are matrices.
+ */
+public interface Backend {
+
+	public Map<String, MatrixBlock> execute(String script, Map<String, Object> inputs, String... outputs);
+
+	/**
+	 * Releases resources held by the backend.
+	 */
+	public default void close() {
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.backend;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sysml.api.DMLScript;
+import org.apache.sysml.api.jmlc.Connection;
+import org.apache.sysml.api.jmlc.PreparedScript;
+import org.apache.sysml.api.jmlc.ResultVariables;
+import org.apache.sysml.image.metrics.Meter;
+import org.apache.sysml.image.metrics.Metrics.Phase;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Backend that runs scripts in process through JMLC, without Spark. Each
+ * distinct script is compiled once and its PreparedScript is kept for later
+ * calls, so COMPILE is only measured for the first call. An instance is not
+ * thread-safe.
+ */
+public class JmlcBackend implements Backend {
+
+	private final Connection conn;
+	private final Map<String, PreparedScript> scripts = new HashMap<String, PreparedScript>();
+
+	public JmlcBackend() {
+		conn = new Connection();
+	}
+
+	@Override
+	public Map<String, MatrixBlock> execute(String script, Map<String, Object> inputs, String... outputs) {
+		try {
+			PreparedScript ps = prepare(script, inputs, outputs);
+			for (Map.Entry<String, Object> input : inputs.entrySet()) {
+				String name = input.getKey();
+				Object value = input.getValue();
+				if (value instanceof MatrixBlock) {
+					ps.setMatrix(name, (MatrixBlock) value, false);
+				} else if (value instanceof Integer) {
+					ps.setScalar(name, ((Integer) value).intValue());
+				} else if (value instanceof Double) {
+					ps.setScalar(name, ((Double) value).doubleValue());
+				} else if (value instanceof String) {
+					ps.setScalar(name, (String) value);
+				} else {
+					throw new RuntimeException("Unsupported input type for " + name + ": " + value.getClass());
+				}
+			}
+			String op = Meter.isEnabled() ? Meter.opName(script) : null;
+			if (!Meter.isStatisticsEnabled()) {
+				return execute(ps, op, outputs);
+			}
+			synchronized (Meter.STATISTICS_LOCK) {
+				boolean wasStatistics = DMLScript.STATISTICS;
+				DMLScript.STATISTICS = true;
+				Statistics.reset();
+				try {
+					Map<String, MatrixBlock> m = execute(ps, op, outputs);
+					Meter.statistics(op, Statistics.display());
+					return m;
+				} finally {
+					DMLScript.STATISTICS = wasStatistics;
+				}
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException("Error executing script", e);
+		}
+	}
+
+	protected Map<String, MatrixBlock> execute(PreparedScript ps, String op, String[] outputs) throws Exception {
+		Map<String, MatrixBlock> m = new HashMap<String, MatrixBlock>();
+		try (Meter meter = Meter.start(op, Phase.EXECUTE)) {
+			ResultVariables rv = ps.executeScript();
+			for (String output : outputs) {
+				m.put(output, rv.getMatrixBlock(output));
+			}
+		}
+		return m;
+	}
+
+	public int getNumPreparedScripts() {
+		return scripts.size();
+	}
+
+	@Override
+	public void close() {
+		scripts.clear();
+		conn.close();
+	}
+
+	protected PreparedScript prepare(String script, Map<String, Object> inputs, String[] outputs) throws Exception {
+		String jmlcScript = toJmlcScript(script, inputs, outputs);
+		PreparedScript ps = scripts.get(jmlcScript);
+		if (ps == null) {
+			String[] in = inputs.keySet().toArray(new String[inputs.size()]);
+			try (Meter meter = Meter.start(Meter.isEnabled() ? Meter.opName(script) : null, Phase.COMPILE)) {
+				ps = conn.prepareScript(jmlcScript, in, outputs, false);
+			}
+			scripts.put(jmlcScript, ps);
+		}
+		return ps;
+	}
+
+	/**
+	 * JMLC binds inputs and outputs through read and write statements, so
+	 * these are generated around the script based on the input types.
+	 */
+	protected static String toJmlcScript(String script, Map<String, Object> inputs, String[] outputs) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Object> input : inputs.entrySet()) {
+			String name = input.getKey();
+			Object value = input.getValue();
+			sb.append(name).append("=read(\"./tmp/").append(name).append("\"");
+			if (value instanceof MatrixBlock) {
+				sb.append(", rows=-1, cols=-1");
+			} else {
+				sb.append(", data_type=\"scalar\", value_type=\"").append(valueType(value)).append("\"");
+			}
+			sb.append(");\n");
+		}
+		sb.append(script).append("\n");
+		for (String output : outputs) {
+			sb.append("write(").append(output).append(", \"./tmp/").append(output).append("\");\n");
+		}
+		return sb.toString();
+	}
+
+	protected static String valueType(Object value) {
+		if (value instanceof Integer) {
+			return "int";
+		} else if (value instanceof Double) {
+			return "double";
+		} else if (value instanceof String) {
+			return "string";
+		}
+		throw new RuntimeException("Unsupported scalar type: " + value.getClass());
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.backend;
+
+import static org.apache.sysml.api.mlcontext.ScriptFactory.dml;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.sysml.api.mlcontext.MLContext;
+import org.apache.sysml.api.mlcontext.MLResults;
+import org.apache.sysml.api.mlcontext.MatrixMetadata;
+import org.apache.sysml.api.mlcontext.Script;
+import org.apache.sysml.image.metrics.Meter;
+import org.apache.sysml.image.metrics.Metrics.Phase;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.utils.Statistics;
+
+/**
+ * Backend that runs each script through the active MLContext. Every call
+ * parses and compiles the script again and requires a SparkSession. MLContext
+ * compiles and executes in one call, so both are measured as EXECUTE.
+ */
+public class MLContextBackend implements Backend {
+
+	@Override
+	public Map<String, MatrixBlock> execute(String script, Map<String, Object> inputs, String... outputs) {
+		Script s = dml(script);
+		for (Map.Entry<String, Object> input : inputs.entrySet()) {
+			Object value = input.getValue();
+			if (value instanceof MatrixBlock) {
+				MatrixBlock mb = (MatrixBlock) value;
+				s.in(input.getKey(), mb, new MatrixMetadata(mb.getNumRows(), mb.getNumColumns(), mb.getNonZeros()));
+			} else {
+				s.in(input.getKey(), value);
+			}
+		}
+		s.out(outputs);
+		String op = Meter.isEnabled() ? Meter.opName(script) : null;
+		MLResults res;
+		if (!Meter.isStatisticsEnabled()) {
+			res = execute(s, op);
+		} else {
+			synchronized (Meter.STATISTICS_LOCK) {
+				MLContext ml = MLContext.getActiveMLContext();
+				boolean wasStatistics = ml.isStatistics();
+				ml.setStatistics(true);
+				try {
+					res = execute(s, op);
+					Meter.statistics(op, Statistics.display());
+				} finally {
+					ml.setStatistics(wasStatistics);
+				}
+			}
+		}
+		Map<String, MatrixBlock> m = new HashMap<String, MatrixBlock>();
+		try (Meter meter = Meter.start(op, Phase.CONVERT_OUT)) {
+			for (String output : outputs) {
+				m.put(output, res.getMatrix(output).toMatrixBlock());
+			}
+		}
+		return m;
+	}
+
+	protected MLResults execute(Script s, String op) {
+		try (Meter meter = Meter.start(op, Phase.EXECUTE)) {
+			return s.execute();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics kept in memory: a counter of calls, time and allocated bytes and a
+ * histogram of times for each operation and phase. Histogram buckets are
+ * powers of two nanoseconds, so percentiles are accurate to a factor of two.
+ * Thread-safe.
+ */
+public class InMemoryMetrics implements Metrics {
+
+	public static final int NUM_BUCKETS = 64;
+
+	public static class Entry {
+		public final LongAdder count = new LongAdder();
+		public final LongAdder nanos = new LongAdder();
+		public final LongAdder bytes = new LongAdder();
+		public final AtomicLongArray histogram = new AtomicLongArray(NUM_BUCKETS);
+
+		protected void add(long n, long b) {
+			count.increment();
+			nanos.add(n);
+			if (b > 0) {
+				bytes.add(b);
+			}
+			histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(1, n)));
+		}
+
+		/**
+		 * Upper bound in nanoseconds of the bucket holding the given quantile
+		 * (0 to 1) of the recorded times.
+		 */
+		public long percentile(double quantile) {
+			long total = count.sum();
+			long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for (int b = 0; b < NUM_BUCKETS; b++) {
+				seen += histogram.get(b);
+				if (seen >= rank && seen > 0) {
+					return (b >= 62) ? Long.MAX_VALUE : (1L << (b + 1)) - 1;
+				}
+			}
+			return 0;
+		}
+	}
+
+	private final boolean statisticsEnabled;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final Map<String, String> statistics = new ConcurrentHashMap<String, String>();
+
+	public InMemoryMetrics() {
+		this(false);
+	}
+
+	/**
+	 * @param statisticsEnabled
+	 *            Whether to collect SystemML's statistics, keeping the latest
+	 *            for each operation
+	 */
+	public InMemoryMetrics(boolean statisticsEnabled) {
+		this.statisticsEnabled = statisticsEnabled;
+	}
+
+	@Override
+	public void record(String op, Phase phase, long nanos, long bytes) {
+		entries.computeIfAbsent(key(op, phase), k -> new Entry()).add(nanos, bytes);
+	}
+
+	@Override
+	public boolean isStatisticsEnabled() {
+		return statisticsEnabled;
+	}
+
+	@Override
+	public void statistics(String op, String stats) {
+		statistics.put(op, stats);
+	}
+
+	public Entry get(String op, Phase phase) {
+		return entries.get(key(op, phase));
+	}
+
+	public String getStatistics(String op) {
+		return statistics.get(op);
+	}
+
+	public Map<String, Entry> getEntries() {
+		return new TreeMap<String, Entry>(entries);
+	}
+
+	public void reset() {
+		entries.clear();
+		statistics.clear();
+	}
+
+	protected static String key(String op, Phase phase) {
+		return op + "/" + phase;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%-40s %8s %12s %12s %12s %14s%n", "op/phase", "count", "total ms", "p50 ms",
+				"p99 ms", "bytes"));
+		for (Map.Entry<String, Entry> e : getEntries().entrySet()) {
+			Entry en = e.getValue();
+			sb.append(String.format("%-40s %8d %12.3f %12.3f %12.3f %14d%n", e.getKey(), en.count.sum(),
+					en.nanos.sum() / 1e6, en.percentile(0.5) / 1e6, en.percentile(0.99) / 1e6, en.bytes.sum()));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.sysml.image.metrics.Metrics.Phase;
+
+/**
+ * Measures one phase of an operation and records it with the active Metrics
+ * when closed. start returns null while metrics are disabled, so a
+ * measurement in a try-with-resources block costs one volatile read:
+ * 
+ * <pre>
+ * try (Meter m = Meter.start("rotate90", Phase.EXECUTE)) {
+ * 	...
+ * }
+ * </pre>
+ */
+public class Meter implements AutoCloseable {
+
+	private static final Pattern IMG_UTIL_CALL = Pattern.compile("img_util::(\\w+)");
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = threadBean();
+
+	private static volatile Metrics metrics = Metrics.NONE;
+
+	private final Metrics target;
+	private final String op;
+	private final Phase phase;
+	private final long startNanos;
+	private final long startBytes;
+
+	protected Meter(Metrics target, String op, Phase phase) {
+		this.target = target;
+		this.op = op;
+		this.phase = phase;
+		this.startBytes = allocatedBytes();
+		this.startNanos = System.nanoTime();
+	}
+
+	public static Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets the metrics that all operations report to. A null metrics disables
+	 * measurement.
+	 */
+	public static void setMetrics(Metrics metrics) {
+		Meter.metrics = (metrics != null) ? metrics : Metrics.NONE;
+	}
+
+	public static boolean isEnabled() {
+		return metrics != Metrics.NONE;
+	}
+
+	/**
+	 * SystemML's statistics are process-wide, so backends hold this lock from
+	 * resetting them until they are read. While statistics are enabled,
+	 * script executions therefore run one at a time.
+	 */
+	public static final Object STATISTICS_LOCK = new Object();
+
+	public static boolean isStatisticsEnabled() {
+		return metrics.isStatisticsEnabled();
+	}
+
+	public static Meter start(String op, Phase phase) {
+		Metrics m = metrics;
+		return (m == Metrics.NONE) ? null : new Meter(m, (op != null) ? op : "script", phase);
+	}
+
+	public static void statistics(String op, String statistics) {
+		metrics.statistics(op, statistics);
+	}
+
+	/**
+	 * Operation name of a script: the img_util functions it calls, joined with
+	 * '+', or "script" if it calls none.
+	 */
+	public static String opName(String script) {
+		Set<String> functions = new LinkedHashSet<String>();
+		Matcher matcher = IMG_UTIL_CALL.matcher(script);
+		while (matcher.find()) {
+			functions.add(matcher.group(1));
+		}
+		return functions.isEmpty() ? "script" : String.join("+", functions);
+	}
+
+	@Override
+	public void close() {
+		long nanos = System.nanoTime() - startNanos;
+		long bytes = (startBytes < 0) ? -1 : allocatedBytes() - startBytes;
+		target.record(op, phase, nanos, bytes);
+	}
+
+	private static long allocatedBytes() {
+		return (THREAD_BEAN != null) ? THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+				if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+					return sunBean;
+				}
+			}
+		} catch (Throwable t) {
+			// allocation is reported as -1
+		}
+		return null;
+	}
+}
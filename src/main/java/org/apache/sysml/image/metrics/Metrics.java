@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.metrics;
+
+/**
+ * Receives timing and allocation measurements of image operations. The
+ * active implementation is set with Meter.setMetrics, and the default (NONE)
+ * disables measurement entirely.
+ */
+public interface Metrics {
+
+	public enum Phase {
+		/** Parsing and compiling a DML script */
+		COMPILE,
+		/** Executing a DML script (including compilation if the backend can't separate it) */
+		EXECUTE,
+		/** Converting inputs to the backend representation */
+		CONVERT_IN,
+		/** Converting outputs from the backend representation */
+		CONVERT_OUT
+	}
+
+	public static final Metrics NONE = new Metrics() {
+		@Override
+		public void record(String op, Phase phase, long nanos, long bytes) {
+		}
+
+		@Override
+		public boolean isStatisticsEnabled() {
+			return false;
+		}
+
+		@Override
+		public void statistics(String op, String statistics) {
+		}
+	};
+
+	/**
+	 * Records one phase of an operation.
+	 * 
+	 * @param op
+	 *            Operation name (the img_util function, or the conversion)
+	 * @param phase
+	 *            Phase of the operation
+	 * @param nanos
+	 *            Elapsed time in nanoseconds
+	 * @param bytes
+	 *            Bytes allocated by the calling thread, or -1 if the JVM
+	 *            doesn't support measuring it
+	 */
+	public void record(String op, Phase phase, long nanos, long bytes);
+
+	/**
+	 * Whether SystemML's own statistics should be collected for each script
+	 * execution and passed to statistics. SystemML keeps them process-wide,
+	 * so this serializes script executions (see Meter.STATISTICS_LOCK).
+	 */
+	public boolean isStatisticsEnabled();
+
+	public void statistics(String op, String statistics);
+}
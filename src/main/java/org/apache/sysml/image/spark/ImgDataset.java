@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.spark;
+
+import static org.apache.sysml.api.mlcontext.ScriptFactory.dml;
+
+import java.util.Collections;
+
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.sysml.api.mlcontext.MatrixFormat;
+import org.apache.sysml.api.mlcontext.MatrixMetadata;
+import org.apache.sysml.api.mlcontext.Script;
+import org.apache.sysml.image.ImgBlocks;
+import org.apache.sysml.image.ImgDml;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+
+/**
+ * A distributed set of same-sized images, held as a DataFrame with an ID
+ * column and one vector column. Each row is an image flattened in row-major
+ * order, which is the batch layout of the img_util *Batch functions.
+ * Operations run as distributed SystemML plans through the active
+ * MLContext.
+ */
+public class ImgDataset {
+
+	public final Dataset<Row> images;
+	public final JavaPairRDD<Long, String> paths;
+	public final int height;
+	public final int width;
+	public final long count;
+
+	/**
+	 * @param images
+	 *            DataFrame with an ID column followed by a vector column
+	 * @param paths
+	 *            Source path of each image by ID, or null if unknown
+	 */
+	public ImgDataset(Dataset<Row> images, JavaPairRDD<Long, String> paths, int height, int width, long count) {
+		this.images = images;
+		this.paths = paths;
+		this.height = height;
+		this.width = width;
+		this.count = count;
+	}
+
+	/**
+	 * Releases the cached images and paths of a dataset returned by
+	 * ImgSparkIO.read. Datasets derived from it share its paths, so call this
+	 * once none of them are used.
+	 */
+	public void unpersist() {
+		images.unpersist();
+		if (paths != null) {
+			paths.unpersist();
+		}
+	}
+
+	public MatrixMetadata getMatrixMetadata() {
+		return new MatrixMetadata(MatrixFormat.DF_VECTOR_WITH_INDEX, count, (long) height * width);
+	}
+
+	public ImgDataset splitVertical() {
+		return apply("splitVertical", false);
+	}
+
+	public ImgDataset flipHorizontal() {
+		return apply("flipHorizontal", false);
+	}
+
+	public ImgDataset flipVertical() {
+		return apply("flipVertical", false);
+	}
+
+	public ImgDataset transpose() {
+		return apply("transpose", true);
+	}
+
+	public ImgDataset rotate90() {
+		return apply("rotate90", true);
+	}
+
+	public ImgDataset rotate180() {
+		return apply("rotate180", false);
+	}
+
+	public ImgDataset rotate270() {
+		return apply("rotate270", true);
+	}
+
+	public ImgDataset shiftColorChannels(int red, int green, int blue) {
+		Script s = dml(ImgDml.SRC_UTIL + "[a,r,g,b]=img_util::splitChannels(i);"
+				+ "r=img_util::shiftColorChannel(r,sr);" + "g=img_util::shiftColorChannel(g,sg);"
+				+ "b=img_util::shiftColorChannel(b,sb);" + "o=img_util::combineChannels(a,r,g,b);")
+						.in("i", images, getMatrixMetadata()).in("sr", red).in("sg", green).in("sb", blue).out("o");
+		return result(s, height, width);
+	}
+
+	/**
+	 * Layers every image of the dataset over the given image.
+	 */
+	public ImgDataset layerOnto(int[][] background) {
+		MatrixBlock b = ImgBlocks.stack(Collections.singletonList(background));
+		Script s = dml(ImgDml.SRC_UTIL + "o=img_util::layerBatch(b,i);").in("i", images, getMatrixMetadata())
+				.in("b", b, new MatrixMetadata(1, b.getNumColumns())).out("o");
+		return result(s, height, width);
+	}
+
+	protected ImgDataset apply(String function, boolean transposed) {
+		Script s = dml(ImgDml.SRC_UTIL + "o=img_util::" + function + "Batch(i,h,w);")
+				.in("i", images, getMatrixMetadata()).in("h", height).in("w", width).out("o");
+		return transposed ? result(s, width, height) : result(s, height, width);
+	}
+
+	protected ImgDataset result(Script s, int height, int width) {
+		Dataset<Row> o = s.execute().getMatrix("o").toDFVectorWithIDColumn();
+		return new ImgDataset(o, paths, height, width, count);
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.spark;
+
+import java.io.Serializable;
+
+/**
+ * A decoded image with its source path, as ARGB pixels in row-major order.
+ */
+public class ImgRecord implements Serializable {
+	private static final long serialVersionUID = 3408577625216712514L;
+
+	public final String path;
+	public final int width;
+	public final int height;
+	public final int[] pixels;
+
+	public ImgRecord(String path, int width, int height, int[] pixels) {
+		this.path = path;
+		this.width = width;
+		this.height = height;
+		this.pixels = pixels;
+	}
+}
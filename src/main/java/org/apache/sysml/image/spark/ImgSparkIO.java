@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image.spark;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.input.PortableDataStream;
+import org.apache.spark.ml.linalg.SQLDataTypes;
+import org.apache.spark.ml.linalg.Vector;
+import org.apache.spark.ml.linalg.Vectors;
+import org.apache.spark.sql.Dataset;
+import org.apache.spark.sql.Row;
+import org.apache.spark.sql.RowFactory;
+import org.apache.spark.sql.SparkSession;
+import org.apache.spark.sql.types.DataTypes;
+import org.apache.spark.sql.types.StructField;
+import org.apache.spark.sql.types.StructType;
+import org.apache.spark.storage.StorageLevel;
+import org.apache.sysml.image.ImgIO;
+
+import scala.Tuple2;
+
+/**
+ * Reads and writes image datasets in parallel on Spark. Files are read as
+ * binary files and decoded on the executors, and results are encoded and
+ * written on the executors, so pixels are never collected to the driver.
+ */
+public class ImgSparkIO {
+
+	public static final String ID_COLUMN = "__INDEX";
+	public static final String IMAGE_COLUMN = "image";
+
+	/**
+	 * Reads all images in a directory or matching a glob. The size of the
+	 * first image is used as the size of the dataset. The images and paths of
+	 * the dataset are cached until ImgDataset.unpersist is called.
+	 */
+	public static ImgDataset read(SparkSession spark, String path, int minPartitions) {
+		return read(spark, path, -1, -1, minPartitions);
+	}
+
+	/**
+	 * Reads all images in a directory or matching a glob. All images must have
+	 * the given size.
+	 */
+	public static ImgDataset read(SparkSession spark, String path, int height, int width, int minPartitions) {
+		JavaSparkContext sc = JavaSparkContext.fromSparkContext(spark.sparkContext());
+		JavaRDD<ImgRecord> decoded = sc.binaryFiles(path, minPartitions).map(t -> decode(t._1(), t._2()))
+				.persist(StorageLevel.MEMORY_AND_DISK());
+		if (height < 0 || width < 0) {
+			ImgRecord first = decoded.first();
+			height = first.height;
+			width = first.width;
+		}
+		final int h = height;
+		final int w = width;
+		JavaPairRDD<ImgRecord, Long> indexed = decoded.zipWithIndex();
+		JavaRDD<Row> rows = indexed.map(t -> {
+			ImgRecord r = t._1();
+			if (r.height != h || r.width != w) {
+				throw new IOException("Image " + r.path + " of size " + r.height + "x" + r.width
+						+ " doesn't match dataset size " + h + "x" + w);
+			}
+			return RowFactory.create((double) (t._2() + 1), Vectors.dense(toDoubles(r.pixels)));
+		});
+		StructType schema = new StructType(
+				new StructField[] { DataTypes.createStructField(ID_COLUMN, DataTypes.DoubleType, false),
+						DataTypes.createStructField(IMAGE_COLUMN, SQLDataTypes.VectorType(), false) });
+		Dataset<Row> df = spark.createDataFrame(rows, schema).persist(StorageLevel.MEMORY_AND_DISK());
+		JavaPairRDD<Long, String> paths = indexed.mapToPair(t -> new Tuple2<Long, String>(t._2() + 1, t._1().path))
+				.persist(StorageLevel.MEMORY_AND_DISK());
+		long count = df.count();
+		paths.count();
+		// the dataset is cached, so the decoded records are no longer needed
+		decoded.unpersist(false);
+		return new ImgDataset(df, paths, h, w, count);
+	}
+
+	/**
+	 * Writes every image of a dataset to a directory in the given format (for
+	 * example "png"). Images keep the base name of their source file, or its
+	 * whole name where base names collide, or are named by ID if the source
+	 * paths are unknown. Only the paths are collected to the driver.
+	 */
+	public static void write(ImgDataset ds, String outDir, String format) {
+		if (!ImgIO.hasWriter(format)) {
+			throw new IllegalArgumentException("No image writer for format " + format);
+		}
+		final int h = ds.height;
+		final int w = ds.width;
+		JavaPairRDD<Long, int[]> pixels = ds.images.javaRDD()
+				.mapToPair(row -> new Tuple2<Long, int[]>((long) row.getDouble(0), toInts((Vector) row.get(1))));
+		JavaPairRDD<String, int[]> named;
+		if (ds.paths != null) {
+			Map<Long, String> paths = ds.paths.collectAsMap();
+			List<Long> ids = new ArrayList<Long>(paths.keySet());
+			List<String> names = new ArrayList<String>(ids.size());
+			for (Long id : ids) {
+				names.add(fileName(paths.get(id)));
+			}
+			List<String> outputs = ImgIO.outputNames(names, format);
+			HashMap<Long, String> outNames = new HashMap<Long, String>();
+			for (int n = 0; n < ids.size(); n++) {
+				outNames.put(ids.get(n), outputs.get(n));
+			}
+			named = pixels.mapToPair(t -> new Tuple2<String, int[]>(outNames.get(t._1()), t._2()));
+		} else {
+			named = pixels.mapToPair(t -> new Tuple2<String, int[]>(String.format("img-%08d.%s", t._1(), format),
+					t._2()));
+		}
+		named.foreachPartition(it -> writePartition(it, outDir, format, h, w));
+	}
+
+	protected static ImgRecord decode(String path, PortableDataStream stream) throws IOException {
+		DataInputStream in = stream.open();
+		try {
+			BufferedImage bi = ImageIO.read(in);
+			if (bi == null) {
+				throw new IOException("Couldn't decode image " + path);
+			}
+			return new ImgRecord(path, bi.getWidth(), bi.getHeight(), ImgIO.buffToPixels(bi));
+		} finally {
+			in.close();
+		}
+	}
+
+	protected static void writePartition(Iterator<Tuple2<String, int[]>> it, String outDir, String format, int h,
+			int w) throws Exception {
+		FileSystem fs = FileSystem.get(new URI(outDir), new Configuration());
+		while (it.hasNext()) {
+			Tuple2<String, int[]> t = it.next();
+			BufferedImage bi = ImgIO.forFormat(ImgIO.pixelsToBuff(t._2(), w, h), format);
+			OutputStream os = fs.create(new Path(outDir, t._1()), true);
+			try {
+				if (!ImageIO.write(bi, format, os)) {
+					throw new IOException("No writer for format " + format);
+				}
+			} finally {
+				os.close();
+			}
+		}
+	}
+
+	protected static String fileName(String path) {
+		return path.substring(path.lastIndexOf('/') + 1);
+	}
+
+	protected static double[] toDoubles(int[] pixels) {
+		double[] d = new double[pixels.length];
+		for (int p = 0; p < pixels.length; p++) {
+			d[p] = pixels[p];
+		}
+		return d;
+	}
+
+	protected static int[] toInts(Vector v) {
+		double[] d = v.toArray();
+		int[] pixels = new int[d.length];
+		for (int p = 0; p < pixels.length; p++) {
+			pixels[p] = (int) d[p];
+		}
+		return pixels;
+	}
+}
@@ -19,12 +19,24 @@
 
 package org.apache.sysml.image.udf;
 
-import org.apache.sysml.image.ImgUtil;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sysml.image.ImgBlocks;
+import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.matrix.data.InputInfo;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.OutputInfo;
 import org.apache.sysml.udf.FunctionParameter;
 import org.apache.sysml.udf.Matrix;
 import org.apache.sysml.udf.Matrix.ValueType;
 import org.apache.sysml.udf.PackageFunction;
 
+/**
+ * Combines alpha, red, green and blue channel matrices into an image matrix.
+ * The channels are packed in one pass directly into the dense output block,
+ * with rows split across threads. Empty channel blocks are treated as zeros
+ * without being expanded. The channels must have the same dimensions.
+ */
 public class CombineChannels extends PackageFunction {
 	private static final long serialVersionUID = -5518339331025304092L;
 
@@ -42,27 +54,69 @@ public class CombineChannels extends PackageFunction {
 
 	@Override
 	public void execute() {
+		MatrixObject[] mos = new MatrixObject[4];
+		boolean[] acquired = new boolean[4];
 		try {
-			Matrix alpha = (Matrix) getFunctionInput(0);
-			Matrix red = (Matrix) getFunctionInput(1);
-			Matrix green = (Matrix) getFunctionInput(2);
-			Matrix blue = (Matrix) getFunctionInput(3);
-
-			int[][] a = ImgUtil.dToI(alpha.getMatrixAsDoubleArray());
-			int[][] r = ImgUtil.dToI(red.getMatrixAsDoubleArray());
-			int[][] g = ImgUtil.dToI(green.getMatrixAsDoubleArray());
-			int[][] b = ImgUtil.dToI(blue.getMatrixAsDoubleArray());
-
-			int[][] i = ImgUtil.combineChannels(a, r, g, b);
-			double[][] d = ImgUtil.iToD(i);
-
-			int width = d[0].length;
-			int height = d.length;
+			double[][] channels = new double[4][];
+			int height = 0;
+			int width = 0;
+			for (int c = 0; c < 4; c++) {
+				mos[c] = ((Matrix) getFunctionInput(c)).getMatrixObject();
+				MatrixBlock mb = mos[c].acquireRead();
+				acquired[c] = true;
+				if (c > 0 && (mb.getNumRows() != height || mb.getNumColumns() != width)) {
+					throw new RuntimeException("Channel of size " + mb.getNumColumns() + "x" + mb.getNumRows()
+							+ " can't be combined with channels of size " + width + "x" + height);
+				}
+				height = mb.getNumRows();
+				width = mb.getNumColumns();
+				channels[c] = ImgBlocks.values(mb);
+			}
+			MatrixBlock out = combine(channels, height, width);
 
 			m = new Matrix(height, width, ValueType.Double);
-			m.setMatrixDoubleArray(d);
+			m.setMatrixDoubleArray(out, OutputInfo.BinaryBlockOutputInfo, InputInfo.BinaryBlockInputInfo);
 		} catch (Exception e) {
 			throw new RuntimeException("Error combining channels", e);
+		} finally {
+			release(mos, acquired);
+		}
+	}
+
+	private static void release(MatrixObject[] mos, boolean[] acquired) {
+		try {
+			for (int c = 0; c < mos.length; c++) {
+				if (acquired[c]) {
+					mos[c].release();
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException("Error releasing channels", e);
 		}
 	}
+
+	private static MatrixBlock combine(double[][] channels, int height, int width) {
+		double[] da = channels[0];
+		double[] dr = channels[1];
+		double[] dg = channels[2];
+		double[] db = channels[3];
+		MatrixBlock out = ImgBlocks.allocate(height, width);
+		double[] d = out.getDenseBlock();
+		AtomicLong nnz = new AtomicLong();
+		ImgBlocks.parallelRows(height, width, (rl, ru) -> {
+			long n = 0;
+			for (int p = rl * width; p < ru * width; p++) {
+				int ca = (da != null) ? (int) da[p] : 0;
+				int cr = (dr != null) ? (int) dr[p] : 0;
+				int cg = (dg != null) ? (int) dg[p] : 0;
+				int cb = (db != null) ? (int) db[p] : 0;
+				int argb = (ca << 24) | (cr << 16) | (cg << 8) | cb;
+				d[p] = argb;
+				n += (argb != 0) ? 1 : 0;
+			}
+			nnz.addAndGet(n);
+		});
+		out.setNonZeros(nnz.get());
+		return out;
+	}
 }
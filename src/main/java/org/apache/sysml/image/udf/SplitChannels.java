@@ -19,13 +19,25 @@
 
 package org.apache.sysml.image.udf;
 
-import org.apache.sysml.image.ImageExample.Channel;
-import org.apache.sysml.image.ImgUtil;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.sysml.image.ImgBlocks;
+import org.apache.sysml.runtime.controlprogram.caching.MatrixObject;
+import org.apache.sysml.runtime.matrix.data.InputInfo;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.apache.sysml.runtime.matrix.data.OutputInfo;
 import org.apache.sysml.udf.FunctionParameter;
 import org.apache.sysml.udf.Matrix;
 import org.apache.sysml.udf.Matrix.ValueType;
 import org.apache.sysml.udf.PackageFunction;
 
+/**
+ * Splits an image matrix into alpha, red, green and blue channel matrices.
+ * The channels are unpacked in one pass over the dense input block, with rows
+ * split across threads. A fully transparent alpha channel is returned as an
+ * empty block. Any other uniform alpha, such as an opaque image, is still a
+ * dense block, since MatrixBlock has no constant representation.
+ */
 public class SplitChannels extends PackageFunction {
 	private static final long serialVersionUID = -2948732287947937128L;
 
@@ -58,38 +70,82 @@ public class SplitChannels extends PackageFunction {
 	public void execute() {
 		try {
 			Matrix im = (Matrix) getFunctionInput(0);
-			double[][] d = im.getMatrixAsDoubleArray();
-
-			int width = d[0].length;
-			int height = d.length;
-
-			double[][] a = new double[height][width];
-			double[][] r = new double[height][width];
-			double[][] g = new double[height][width];
-			double[][] b = new double[height][width];
-
-			int[][] i = ImgUtil.dToI(d);
-
-			for (int y = 0; y < height; y++) {
-				for (int x = 0; x < width; x++) {
-					a[y][x] = ImgUtil.obtainPixelByChannel(i[y][x], Channel.ALPHA);
-					r[y][x] = ImgUtil.obtainPixelByChannel(i[y][x], Channel.RED);
-					g[y][x] = ImgUtil.obtainPixelByChannel(i[y][x], Channel.GREEN);
-					b[y][x] = ImgUtil.obtainPixelByChannel(i[y][x], Channel.BLUE);
+			MatrixObject mo = im.getMatrixObject();
+			MatrixBlock in = mo.acquireRead();
+			int height = in.getNumRows();
+			int width = in.getNumColumns();
+			MatrixBlock a, r, g, b;
+			try {
+				double[] d = ImgBlocks.values(in);
+				if (d == null) {
+					a = new MatrixBlock(height, width, true);
+					r = new MatrixBlock(height, width, true);
+					g = new MatrixBlock(height, width, true);
+					b = new MatrixBlock(height, width, true);
+				} else {
+					a = ImgBlocks.allocate(height, width);
+					r = ImgBlocks.allocate(height, width);
+					g = ImgBlocks.allocate(height, width);
+					b = ImgBlocks.allocate(height, width);
+					split(d, height, width, a, r, g, b);
+					if (a.getNonZeros() == 0) {
+						a = new MatrixBlock(height, width, true);
+					}
 				}
+			} finally {
+				mo.release();
 			}
-			alpha = new Matrix(height, width, ValueType.Double);
-			red = new Matrix(height, width, ValueType.Double);
-			green = new Matrix(height, width, ValueType.Double);
-			blue = new Matrix(height, width, ValueType.Double);
-
-			alpha.setMatrixDoubleArray(a);
-			red.setMatrixDoubleArray(r);
-			green.setMatrixDoubleArray(g);
-			blue.setMatrixDoubleArray(b);
 
+			alpha = output(a);
+			red = output(r);
+			green = output(g);
+			blue = output(b);
 		} catch (Exception e) {
 			throw new RuntimeException("Error splitting channels", e);
 		}
 	}
+
+	private static void split(double[] d, int height, int width, MatrixBlock a, MatrixBlock r, MatrixBlock g,
+			MatrixBlock b) {
+		double[] da = a.getDenseBlock();
+		double[] dr = r.getDenseBlock();
+		double[] dg = g.getDenseBlock();
+		double[] db = b.getDenseBlock();
+		AtomicLong nnzA = new AtomicLong();
+		AtomicLong nnzR = new AtomicLong();
+		AtomicLong nnzG = new AtomicLong();
+		AtomicLong nnzB = new AtomicLong();
+		ImgBlocks.parallelRows(height, width, (rl, ru) -> {
+			long na = 0, nr = 0, ng = 0, nb = 0;
+			for (int p = rl * width; p < ru * width; p++) {
+				int argb = (int) d[p];
+				int ca = argb >> 24;
+				int cr = (argb >> 16) & 0xFF;
+				int cg = (argb >> 8) & 0xFF;
+				int cb = argb & 0xFF;
+				da[p] = ca;
+				dr[p] = cr;
+				dg[p] = cg;
+				db[p] = cb;
+				na += (ca != 0) ? 1 : 0;
+				nr += (cr != 0) ? 1 : 0;
+				ng += (cg != 0) ? 1 : 0;
+				nb += (cb != 0) ? 1 : 0;
+			}
+			nnzA.addAndGet(na);
+			nnzR.addAndGet(nr);
+			nnzG.addAndGet(ng);
+			nnzB.addAndGet(nb);
+		});
+		a.setNonZeros(nnzA.get());
+		r.setNonZeros(nnzR.get());
+		g.setNonZeros(nnzG.get());
+		b.setNonZeros(nnzB.get());
+	}
+
+	private static Matrix output(MatrixBlock mb) throws Exception {
+		Matrix m = new Matrix(mb.getNumRows(), mb.getNumColumns(), ValueType.Double);
+		m.setMatrixDoubleArray(mb, OutputInfo.BinaryBlockOutputInfo, InputInfo.BinaryBlockInputInfo);
+		return m;
+	}
 }
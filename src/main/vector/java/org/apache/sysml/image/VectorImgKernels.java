@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Pixel kernels using the Java Vector API, processing as many pixels per
+ * instruction as the preferred species allows. Remaining pixels of a row go
+ * through ScalarImgKernels, which uses the same arithmetic, so results are
+ * bit-exact. Compiled by the vector profile (JDK 17+) and loaded by
+ * ImgKernels.get when jdk.incubator.vector is available.
+ */
+public class VectorImgKernels implements ImgKernels {
+
+	private static final VectorSpecies<Integer> S = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+	// ints with as many lanes as D, for blending in double precision
+	private static final VectorSpecies<Integer> DI = VectorSpecies.of(int.class,
+			VectorShape.forBitSize(D.vectorBitSize() / 2));
+
+	@Override
+	public void unpack(int[] pixels, int[] a, int[] r, int[] g, int[] b, int len) {
+		int x = 0;
+		for (int n = S.loopBound(len); x < n; x += S.length()) {
+			IntVector p = IntVector.fromArray(S, pixels, x);
+			p.lanewise(VectorOperators.ASHR, 24).intoArray(a, x);
+			p.lanewise(VectorOperators.LSHR, 16).and(0xFF).intoArray(r, x);
+			p.lanewise(VectorOperators.LSHR, 8).and(0xFF).intoArray(g, x);
+			p.and(0xFF).intoArray(b, x);
+		}
+		for (; x < len; x++) {
+			int p = pixels[x];
+			a[x] = p >> 24;
+			r[x] = (p >> 16) & 0xFF;
+			g[x] = (p >> 8) & 0xFF;
+			b[x] = p & 0xFF;
+		}
+	}
+
+	@Override
+	public void pack(int[] a, int[] r, int[] g, int[] b, int[] pixels, int len) {
+		int x = 0;
+		for (int n = S.loopBound(len); x < n; x += S.length()) {
+			IntVector p = IntVector.fromArray(S, a, x).lanewise(VectorOperators.LSHL, 24)
+					.or(IntVector.fromArray(S, r, x).lanewise(VectorOperators.LSHL, 16))
+					.or(IntVector.fromArray(S, g, x).lanewise(VectorOperators.LSHL, 8))
+					.or(IntVector.fromArray(S, b, x));
+			p.intoArray(pixels, x);
+		}
+		for (; x < len; x++) {
+			pixels[x] = (a[x] << 24) | (r[x] << 16) | (g[x] << 8) | b[x];
+		}
+	}
+
+	@Override
+	public void shift(int[] channel, int shift, int len) {
+		int x = 0;
+		for (int n = S.loopBound(len); x < n; x += S.length()) {
+			IntVector.fromArray(S, channel, x).add(shift).max(0).min(255).intoArray(channel, x);
+		}
+		for (; x < len; x++) {
+			channel[x] = Math.min(255, Math.max(0, channel[x] + shift));
+		}
+	}
+
+	@Override
+	public void blend(int[] bottom, int[] top, int[] out, int len) {
+		int x = 0;
+		for (int n = DI.loopBound(len); x < n; x += DI.length()) {
+			IntVector t = IntVector.fromArray(DI, top, x);
+			IntVector bt = IntVector.fromArray(DI, bottom, x);
+			IntVector ta = t.lanewise(VectorOperators.LSHR, 24);
+			DoubleVector f2 = toDouble(ta).div(255);
+			DoubleVector f1 = f2.neg().add(1);
+			DoubleVector r = blendChannel(t, bt, f2, f1, 16);
+			DoubleVector g = blendChannel(t, bt, f2, f1, 8);
+			DoubleVector b = blendChannel(t, bt, f2, f1, 0);
+			DoubleVector v = r.mul(65536).add(-16777216.0).add(g.mul(256)).add(b);
+			IntVector o = (IntVector) v.convertShape(VectorOperators.D2I, DI, 0);
+			VectorMask<Integer> transparent = ta.eq(0);
+			VectorMask<Integer> opaque = ta.eq(255);
+			o.blend(bt, transparent).blend(t, opaque).intoArray(out, x);
+		}
+		for (; x < len; x++) {
+			out[x] = ScalarImgKernels.blend(bottom[x], top[x]);
+		}
+	}
+
+	private static DoubleVector blendChannel(IntVector t, IntVector bt, DoubleVector f2, DoubleVector f1,
+			int shift) {
+		DoubleVector tc = toDouble(t.lanewise(VectorOperators.LSHR, shift).and(0xFF));
+		DoubleVector bc = toDouble(bt.lanewise(VectorOperators.LSHR, shift).and(0xFF));
+		return tc.mul(f2).add(bc.mul(f1));
+	}
+
+	private static DoubleVector toDouble(IntVector v) {
+		return (DoubleVector) v.convertShape(VectorOperators.I2D, D, 0);
+	}
+
+	@Override
+	public String getName() {
+		return "vector" + S.length();
+	}
+}
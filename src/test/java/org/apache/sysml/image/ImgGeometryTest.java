@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.apache.sysml.image.backend.Backend;
+import org.apache.sysml.image.backend.JmlcBackend;
+import org.junit.Test;
+
+public class ImgGeometryTest {
+
+	private static final String[] OPS = { "rotate90", "rotate180", "rotate270", "flipHorizontal", "flipVertical",
+			"transpose", "transverse", "splitVertical" };
+
+	// widths x heights: a single pixel, odd sizes, sizes that cross
+	// BLOCK_SIZE, and a size above ImgBlocks.PAR_THRESHOLD (split across
+	// threads)
+	private static final int[][] SIZES = { { 1, 1 }, { 7, 5 }, { 6, 9 }, { 130, 67 }, { 300, 260 } };
+
+	@Test
+	public void testMatchesReference() {
+		for (int[] size : SIZES) {
+			int[][] i = TestImages.random(size[0], size[1], size[0]);
+			for (String op : OPS) {
+				assertArrayEquals(op + " " + size[0] + "x" + size[1], reference(op, i), geometry(op, i));
+			}
+		}
+	}
+
+	@Test
+	public void testPackedMatchesArrays() {
+		for (int[] size : SIZES) {
+			int[][] i = TestImages.random(size[0], size[1], size[1]);
+			int[] pixels = TestImages.pixels(i);
+			for (String op : OPS) {
+				assertArrayEquals(op + " " + size[0] + "x" + size[1], TestImages.pixels(geometry(op, i)),
+						geometry(op, pixels, size[0], size[1]));
+			}
+		}
+	}
+
+	@Test
+	public void testMatchesDml() {
+		int[][] i = TestImages.random(7, 5, 2);
+		Backend previous = ImgDml.getThreadBackend();
+		JmlcBackend backend = new JmlcBackend();
+		ImgDml.setThreadBackend(backend);
+		try {
+			for (String op : OPS) {
+				assertArrayEquals(op, ImgDml.imgUtilDml(op, i), geometry(op, i));
+			}
+		} finally {
+			ImgDml.setThreadBackend(previous);
+			backend.close();
+		}
+	}
+
+	protected static int[][] geometry(String op, int[][] i) {
+		switch (op) {
+		case "rotate90":
+			return ImgGeometry.rotate90(i);
+		case "rotate180":
+			return ImgGeometry.rotate180(i);
+		case "rotate270":
+			return ImgGeometry.rotate270(i);
+		case "flipHorizontal":
+			return ImgGeometry.flipHorizontal(i);
+		case "flipVertical":
+			return ImgGeometry.flipVertical(i);
+		case "transpose":
+			return ImgGeometry.transpose(i);
+		case "transverse":
+			return ImgGeometry.transverse(i);
+		case "splitVertical":
+			return ImgGeometry.splitVertical(i);
+		default:
+			throw new IllegalArgumentException(op);
+		}
+	}
+
+	protected static int[] geometry(String op, int[] pixels, int width, int height) {
+		switch (op) {
+		case "rotate90":
+			return ImgGeometry.rotate90(pixels, width, height);
+		case "rotate180":
+			return ImgGeometry.rotate180(pixels, width, height);
+		case "rotate270":
+			return ImgGeometry.rotate270(pixels, width, height);
+		case "flipHorizontal":
+			return ImgGeometry.flipHorizontal(pixels, width, height);
+		case "flipVertical":
+			return ImgGeometry.flipVertical(pixels, width, height);
+		case "transpose":
+			return ImgGeometry.transpose(pixels, width, height);
+		case "transverse":
+			return ImgGeometry.transverse(pixels, width, height);
+		case "splitVertical":
+			return ImgGeometry.splitVertical(pixels, width, height);
+		default:
+			throw new IllegalArgumentException(op);
+		}
+	}
+
+	/**
+	 * The operations written out pixel by pixel, following the img_util
+	 * definitions (rotations are clockwise).
+	 */
+	protected static int[][] reference(String op, int[][] i) {
+		int h = i.length;
+		int w = i[0].length;
+		boolean transposed = op.equals("rotate90") || op.equals("rotate270") || op.equals("transpose")
+				|| op.equals("transverse");
+		int[][] o = transposed ? new int[w][h] : new int[h][w];
+		// splitVertical is cbind(im[,mid:c], im[,1:mid-1]) with 1-based mid
+		int mid = (int) Math.round(w / 2.0);
+		for (int r = 0; r < o.length; r++) {
+			for (int c = 0; c < o[0].length; c++) {
+				switch (op) {
+				case "rotate90":
+					o[r][c] = i[h - 1 - c][r];
+					break;
+				case "rotate180":
+					o[r][c] = i[h - 1 - r][w - 1 - c];
+					break;
+				case "rotate270":
+					o[r][c] = i[c][w - 1 - r];
+					break;
+				case "flipHorizontal":
+					o[r][c] = i[r][w - 1 - c];
+					break;
+				case "flipVertical":
+					o[r][c] = i[h - 1 - r][c];
+					break;
+				case "transpose":
+					o[r][c] = i[c][r];
+					break;
+				case "transverse":
+					o[r][c] = i[h - 1 - c][w - 1 - r];
+					break;
+				case "splitVertical":
+					o[r][c] = (c <= w - mid) ? i[r][mid - 1 + c] : i[r][c - (w - mid + 1)];
+					break;
+				default:
+					throw new IllegalArgumentException(op);
+				}
+			}
+		}
+		return o;
+	}
+}
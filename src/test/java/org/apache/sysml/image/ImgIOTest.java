@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ImgIOTest {
+
+	@Test
+	public void testOutputNames() {
+		assertEquals(Arrays.asList("a.png", "b.png"), ImgIO.outputNames(Arrays.asList("a.jpg", "b.gif"), "png"));
+		assertEquals(Arrays.asList("a.png.png", "a.jpg.png", "b.png"),
+				ImgIO.outputNames(Arrays.asList("a.png", "a.jpg", "b"), "png"));
+	}
+
+	@Test
+	public void testOutputNamesStayUnique() {
+		// a.png.jpg has the unique base a.png, which the colliding a.png
+		// already takes as its whole name
+		List<String> out = ImgIO.outputNames(Arrays.asList("a.png", "a.jpg", "a.png.jpg"), "png");
+		assertEquals(Arrays.asList("a.png.png", "a.jpg.png", "a.png-1.png"), out);
+
+		// a suffixed name must not take the name of a later input
+		out = ImgIO.outputNames(Arrays.asList("a.png", "a.jpg", "a.png.jpg", "a.png-1.gif"), "png");
+		assertEquals(4, new HashSet<String>(out).size());
+		assertEquals("a.png-1.png", out.get(3));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOutputNamesDuplicateInput() {
+		ImgIO.outputNames(Arrays.asList("a.png", "b.png", "a.png"), "jpg");
+	}
+}
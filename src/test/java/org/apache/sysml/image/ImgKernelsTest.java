@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assume.assumeNotNull;
+
+import org.apache.sysml.image.backend.Backend;
+import org.apache.sysml.image.backend.JmlcBackend;
+import org.junit.Test;
+
+public class ImgKernelsTest {
+
+	// not a multiple of any vector length, so the scalar tail is used too
+	private static final int LENGTH = 1021;
+
+	private final ImgKernels scalar = new ScalarImgKernels();
+
+	@Test
+	public void testUnpackPackVectorMatchesScalar() {
+		ImgKernels vector = vector();
+		assumeNotNull(vector);
+		int[] pixels = TestImages.random(LENGTH, 1);
+		int[][] s = new int[4][LENGTH];
+		int[][] v = new int[4][LENGTH];
+		scalar.unpack(pixels, s[0], s[1], s[2], s[3], LENGTH);
+		vector.unpack(pixels, v[0], v[1], v[2], v[3], LENGTH);
+		assertArrayEquals(s, v);
+
+		int[] packed = new int[LENGTH];
+		vector.pack(v[0], v[1], v[2], v[3], packed, LENGTH);
+		assertArrayEquals(pixels, packed);
+	}
+
+	@Test
+	public void testShiftVectorMatchesScalar() {
+		ImgKernels vector = vector();
+		assumeNotNull(vector);
+		for (int shift : new int[] { -300, -17, 0, 42, 300 }) {
+			int[] s = new int[LENGTH];
+			scalar.unpack(TestImages.random(LENGTH, shift), new int[LENGTH], s, new int[LENGTH], new int[LENGTH],
+					LENGTH);
+			int[] v = s.clone();
+			scalar.shift(s, shift, LENGTH);
+			vector.shift(v, shift, LENGTH);
+			assertArrayEquals("shift " + shift, s, v);
+		}
+	}
+
+	@Test
+	public void testBlendVectorMatchesScalar() {
+		ImgKernels vector = vector();
+		assumeNotNull(vector);
+		int[] bottom = TestImages.random(LENGTH, 2);
+		int[] top = TestImages.random(LENGTH, 3);
+		int[] s = new int[LENGTH];
+		int[] v = new int[LENGTH];
+		scalar.blend(bottom, top, s, LENGTH);
+		vector.blend(bottom, top, v, LENGTH);
+		assertArrayEquals(s, v);
+	}
+
+	@Test
+	public void testBlendMatchesLayer() {
+		int[][] bottom = TestImages.random(37, 23, 4);
+		int[][] top = TestImages.random(37, 23, 5);
+		Backend previous = ImgDml.getThreadBackend();
+		JmlcBackend backend = new JmlcBackend();
+		ImgDml.setThreadBackend(backend);
+		try {
+			assertArrayEquals(ImgDml.layer(bottom, top), ImgUtil.blend(bottom, top));
+		} finally {
+			ImgDml.setThreadBackend(previous);
+			backend.close();
+		}
+	}
+
+	/**
+	 * The Vector API kernels, or null if they aren't compiled or the JVM
+	 * wasn't started with jdk.incubator.vector.
+	 */
+	protected static ImgKernels vector() {
+		try {
+			return (ImgKernels) Class.forName("org.apache.sysml.image.VectorImgKernels").getDeclaredConstructor()
+					.newInstance();
+		} catch (Throwable e) {
+			return null;
+		}
+	}
+}
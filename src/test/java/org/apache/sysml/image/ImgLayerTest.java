@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.sysml.image.backend.Backend;
+import org.apache.sysml.image.backend.JmlcBackend;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImgLayerTest {
+
+	private static final int WIDTH = 37;
+	private static final int HEIGHT = 23;
+
+	private Backend previous;
+	private JmlcBackend backend;
+
+	@Before
+	public void setUp() {
+		previous = ImgDml.getThreadBackend();
+		backend = new JmlcBackend();
+		ImgDml.setThreadBackend(backend);
+	}
+
+	@After
+	public void tearDown() {
+		ImgDml.setThreadBackend(previous);
+		backend.close();
+	}
+
+	@Test
+	public void testLayerMatchesLayerLoop() {
+		int[][] bottom = TestImages.random(WIDTH, HEIGHT, 1);
+		int[][] top = TestImages.random(WIDTH, HEIGHT, 2);
+		assertFalse(ImgBlocks.overlayToBlock(top).isInSparseFormat());
+		assertArrayEquals(ImgDml.layerLoop(bottom, top), ImgDml.layer(bottom, top));
+	}
+
+	@Test
+	public void testLayerSparseMatchesLayerLoop() {
+		int[][] bottom = TestImages.random(WIDTH, HEIGHT, 3);
+		int[][] top = overlay(0.1, 4);
+		assertTrue(ImgBlocks.overlayToBlock(top).isInSparseFormat());
+		assertArrayEquals(ImgDml.layerLoop(bottom, top), ImgDml.layer(bottom, top));
+	}
+
+	@Test
+	public void testLayerEmptyOverlay() {
+		int[][] bottom = TestImages.random(WIDTH, HEIGHT, 5);
+		int[][] top = overlay(0, 6);
+		assertArrayEquals(bottom, ImgDml.layer(bottom, top));
+		assertArrayEquals(bottom, ImgDml.layerLoop(bottom, top));
+	}
+
+	/**
+	 * A random image where a fraction of the pixels is visible and the others
+	 * are zero, as in a sparse overlay.
+	 */
+	protected static int[][] overlay(double visible, long seed) {
+		Random rnd = new Random(seed);
+		int[][] i = TestImages.random(WIDTH, HEIGHT, seed);
+		for (int[] row : i) {
+			for (int x = 0; x < row.length; x++) {
+				if (rnd.nextDouble() >= visible) {
+					row[x] = 0;
+				} else if ((row[x] >>> 24) == 0) {
+					row[x] |= 0xFF000000;
+				}
+			}
+		}
+		return i;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.apache.sysml.image.ImgResize.Mode;
+import org.apache.sysml.runtime.matrix.data.MatrixBlock;
+import org.junit.Test;
+
+public class ImgResizeTest {
+
+	private static final double EPS = 1e-12;
+
+	// sources x targets: up, down, by non-integer factors and to one pixel
+	private static final int[][] SIZES = { { 2, 4 }, { 4, 2 }, { 3, 2 }, { 5, 8 }, { 8, 5 }, { 7, 1 }, { 1, 6 } };
+
+	@Test
+	public void testRowsSumToOne() {
+		for (Mode mode : Mode.values()) {
+			for (int[] size : SIZES) {
+				double[][] m = toArray(ImgResize.createInterpolationMatrix(mode, size[0], size[1]));
+				for (int i = 0; i < size[1]; i++) {
+					double sum = 0;
+					for (double v : m[i]) {
+						sum += v;
+					}
+					assertEquals(mode + " " + size[0] + " to " + size[1] + " row " + i, 1, sum, EPS);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSameSizeIsIdentity() {
+		for (Mode mode : Mode.values()) {
+			double[][] m = toArray(ImgResize.createInterpolationMatrix(mode, 5, 5));
+			for (int i = 0; i < 5; i++) {
+				for (int j = 0; j < 5; j++) {
+					assertEquals(mode + " (" + i + ", " + j + ")", (i == j) ? 1 : 0, m[i][j], 0);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testNearest() {
+		assertMatrix(new double[][] { { 1, 0 }, { 1, 0 }, { 0, 1 }, { 0, 1 } }, Mode.NEAREST, 2, 4);
+		assertMatrix(new double[][] { { 0, 1, 0, 0 }, { 0, 0, 0, 1 } }, Mode.NEAREST, 4, 2);
+	}
+
+	@Test
+	public void testBilinear() {
+		// pixel centers are aligned, and samples outside the source clamp
+		assertMatrix(new double[][] { { 1, 0 }, { 0.75, 0.25 }, { 0.25, 0.75 }, { 0, 1 } }, Mode.BILINEAR, 2, 4);
+		assertMatrix(new double[][] { { 0.5, 0.5, 0, 0 }, { 0, 0, 0.5, 0.5 } }, Mode.BILINEAR, 4, 2);
+	}
+
+	@Test
+	public void testArea() {
+		assertMatrix(new double[][] { { 0.5, 0.5, 0, 0 }, { 0, 0, 0.5, 0.5 } }, Mode.AREA, 4, 2);
+		assertMatrix(new double[][] { { 2 / 3.0, 1 / 3.0, 0 }, { 0, 1 / 3.0, 2 / 3.0 } }, Mode.AREA, 3, 2);
+	}
+
+	@Test
+	public void testCache() {
+		ImgResize.clearCache();
+		MatrixBlock mb = ImgResize.interpolationMatrix(Mode.BILINEAR, 3, 5);
+		assertSame(mb, ImgResize.interpolationMatrix(Mode.BILINEAR, 3, 5));
+		assertNotSame(mb, ImgResize.interpolationMatrix(Mode.AREA, 3, 5));
+		assertEquals(2, ImgResize.getCacheSize());
+		for (int i = 1; i <= ImgResize.MAX_CACHE_ENTRIES; i++) {
+			ImgResize.interpolationMatrix(Mode.NEAREST, i, 2);
+		}
+		assertEquals(ImgResize.MAX_CACHE_ENTRIES, ImgResize.getCacheSize());
+		ImgResize.clearCache();
+		assertEquals(0, ImgResize.getCacheSize());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testEmptySize() {
+		ImgResize.interpolationMatrix(Mode.NEAREST, 0, 2);
+	}
+
+	protected static void assertMatrix(double[][] expected, Mode mode, int src, int dst) {
+		double[][] m = toArray(ImgResize.createInterpolationMatrix(mode, src, dst));
+		for (int i = 0; i < dst; i++) {
+			assertArrayEquals(mode + " " + src + " to " + dst + " row " + i, expected[i], m[i], EPS);
+		}
+	}
+
+	protected static double[][] toArray(MatrixBlock mb) {
+		double[][] d = new double[mb.getNumRows()][mb.getNumColumns()];
+		for (int i = 0; i < d.length; i++) {
+			for (int j = 0; j < d[i].length; j++) {
+				d[i][j] = mb.quickGetValue(i, j);
+			}
+		}
+		return d;
+	}
+}
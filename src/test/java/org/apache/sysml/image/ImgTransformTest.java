@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ImgTransformTest {
+
+	// not square, so transforms that transpose change the dimensions
+	private static final int WIDTH = 7;
+	private static final int HEIGHT = 5;
+
+	private final int[][] i = TestImages.random(WIDTH, HEIGHT, 1);
+
+	@Test
+	public void testThenMatchesSequentialApply() {
+		for (ImgTransform first : ImgTransform.values()) {
+			for (ImgTransform next : ImgTransform.values()) {
+				assertArrayEquals(first + " then " + next, next.apply(first.apply(i)), first.then(next).apply(i));
+			}
+		}
+	}
+
+	@Test
+	public void testThenMatchesSequentialApplyPacked() {
+		int[] pixels = TestImages.pixels(i);
+		for (ImgTransform first : ImgTransform.values()) {
+			int[] once = first.apply(pixels, WIDTH, HEIGHT);
+			int w = first.isTransposed() ? HEIGHT : WIDTH;
+			int h = first.isTransposed() ? WIDTH : HEIGHT;
+			for (ImgTransform next : ImgTransform.values()) {
+				assertArrayEquals(first + " then " + next, next.apply(once, w, h),
+						first.then(next).apply(pixels, WIDTH, HEIGHT));
+			}
+		}
+	}
+
+	@Test
+	public void testFold() {
+		ImgTransform[] ts = ImgTransform.values();
+		int[][] o = i;
+		for (ImgTransform t : ts) {
+			o = t.apply(o);
+		}
+		assertArrayEquals(o, ImgTransform.fold(ts).apply(i));
+		assertEquals(ImgTransform.IDENTITY, ImgTransform.fold());
+	}
+
+	@Test
+	public void testInverse() {
+		for (ImgTransform t : ImgTransform.values()) {
+			assertEquals(ImgTransform.IDENTITY, t.then(t.inverse()));
+			assertArrayEquals(t.toString(), i, t.inverse().apply(t.apply(i)));
+		}
+	}
+
+	@Test
+	public void testSourceIndexMatchesApply() {
+		int[] pixels = TestImages.pixels(i);
+		for (ImgTransform t : ImgTransform.values()) {
+			int[][] o = t.apply(i);
+			for (int r = 0; r < o.length; r++) {
+				for (int c = 0; c < o[0].length; c++) {
+					assertEquals(t + " (" + r + ", " + c + ")", o[r][c],
+							pixels[t.sourceIndex(r, c, WIDTH, HEIGHT)]);
+				}
+			}
+		}
+	}
+}
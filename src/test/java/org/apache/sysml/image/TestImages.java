@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.sysml.image;
+
+import java.util.Random;
+
+/**
+ * Random images for tests, mixing transparent, opaque and translucent
+ * pixels.
+ */
+public class TestImages {
+
+	public static int[][] random(int width, int height, long seed) {
+		Random rnd = new Random(seed);
+		int[][] i = new int[height][width];
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int p = rnd.nextInt();
+				switch (rnd.nextInt(4)) {
+				case 0:
+					p &= 0x00FFFFFF;
+					break;
+				case 1:
+					p |= 0xFF000000;
+					break;
+				default:
+				}
+				i[y][x] = p;
+			}
+		}
+		return i;
+	}
+
+	public static int[] random(int length, long seed) {
+		return random(length, 1, seed)[0];
+	}
+
+	/**
+	 * Packs an image into a row-major pixel array.
+	 */
+	public static int[] pixels(int[][] i) {
+		int width = i[0].length;
+		int[] pixels = new int[i.length * width];
+		for (int y = 0; y < i.length; y++) {
+			System.arraycopy(i[y], 0, pixels, y * width, width);
+		}
+		return pixels;
+	}
+}